@@ -0,0 +1,113 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xdev.jadoth.sqlengine.INSERT;
+import com.xdev.jadoth.sqlengine.SELECT;
+import com.xdev.jadoth.sqlengine.internal.QueryPart;
+import com.xdev.jadoth.sqlengine.internal.tables.SqlTable;
+
+
+/**
+ * Measures the SQL assembly of {@link IngresDMLAssembler}, with and without the assembled SQL cache of
+ * {@link IngresDbms}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class IngresDMLAssemblerBenchmark
+{
+	private static final String[] COLUMN_NAMES = {"id", "name", "description", "price", "created", "modified",
+		"owner", "state"};
+	
+	/**
+	 * Capacity of the assembled SQL cache, 0 disables it.
+	 */
+	@Param({"0", "256"})
+	public int cacheCapacity;
+	
+	private IngresDbms dbms;
+	private IngresDMLAssembler assembler;
+	
+	private SELECT select;
+	private SELECT selectRowLimit;
+	private INSERT insert;
+	
+	@Setup
+	public void setup()
+	{
+		this.dbms = new IngresDbms();
+		this.dbms.getAssembledSqlCache().setCapacity(this.cacheCapacity);
+		this.assembler = (IngresDMLAssembler)this.dbms.getDMLAssembler();
+		
+		final SqlTable table = new SqlTable("bench", "article", "a");
+		this.select = new SELECT().items((Object[])COLUMN_NAMES).FROM(table);
+		this.selectRowLimit = new SELECT().items((Object[])COLUMN_NAMES).FROM(table).OFFSET_SKIP(100)
+			.FETCH_FIRST(50);
+		this.insert = new INSERT().INTO(table).VALUES((Object[])COLUMN_NAMES);
+	}
+	
+	@Benchmark
+	public String assembleSelect()
+	{
+		return this.assemble(this.select);
+	}
+	
+	@Benchmark
+	public String assembleSelectRowLimit()
+	{
+		return this.assemble(this.selectRowLimit);
+	}
+	
+	@Benchmark
+	public String assembleInsert()
+	{
+		return this.assemble(this.insert);
+	}
+	
+	@Benchmark
+	public String assembleBatchInsert()
+	{
+		return this.assembler.assembleBatchINSERT("bench", "article", COLUMN_NAMES, new StringBuilder(256))
+			.toString();
+	}
+	
+	private String assemble(final Object query)
+	{
+		final StringBuilder sb = new StringBuilder(256);
+		QueryPart.assembleObject(query, this.assembler, sb, 0, 0);
+		return sb.toString();
+	}
+}
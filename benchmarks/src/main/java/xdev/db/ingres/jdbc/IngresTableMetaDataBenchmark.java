@@ -0,0 +1,115 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import xdev.db.DBMetaData;
+import xdev.db.DBMetaData.TableInfo;
+import xdev.db.DBMetaData.TableType;
+
+
+/**
+ * Measures how {@link IngresJDBCMetaData} turns catalog rows into table metadata. The catalog is synthetic: every
+ * table has 20 columns of mixed types, a primary key and a secondary index, so no database is required.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngresTableMetaDataBenchmark
+{
+	private static final int COLUMNS_PER_TABLE = 20;
+	
+	private static final Object[][] COLUMN_TYPES = {
+		// column_ingdatatype, column_datatype, column_length, column_scale
+		{30, "INTEGER", 4, 0},
+		{21, "VARCHAR", 255, 0},
+		{10, "DECIMAL", 15, 2},
+		{3, "INGRESDATE", 12, 0},
+		{-1, "TIMESTAMP WITH TIME ZONE", 0, 0}
+	};
+	
+	@Param({"1000", "10000", "100000"})
+	public int columnCount;
+	
+	private IngresJDBCMetaData metaData;
+	private TableInfo[] tables;
+	private List<List<IngresJDBCMetaData.ColumnRow>> columnRows;
+	private List<List<IngresJDBCMetaData.KeyRow>> primaryKeyRows;
+	private List<List<IngresJDBCMetaData.IndexRow>> indexRows;
+	private final Map<Object, Object> defaultValueMap = new HashMap<>();
+	
+	@Setup
+	public void setup() throws Exception
+	{
+		this.metaData = new IngresJDBCMetaData(new IngresJDBCDataSource());
+		
+		final int tableCount = Math.max(1, this.columnCount / COLUMNS_PER_TABLE);
+		this.tables = new TableInfo[tableCount];
+		this.columnRows = new ArrayList<>(tableCount);
+		this.primaryKeyRows = new ArrayList<>(tableCount);
+		this.indexRows = new ArrayList<>(tableCount);
+		for(int t = 0; t < tableCount; t++)
+		{
+			this.tables[t] = new TableInfo(TableType.TABLE, "bench", "table_" + t);
+			final List<IngresJDBCMetaData.ColumnRow> columns = new ArrayList<>(COLUMNS_PER_TABLE);
+			for(int c = 0; c < COLUMNS_PER_TABLE; c++)
+			{
+				final Object[] type = COLUMN_TYPES[c % COLUMN_TYPES.length];
+				columns.add(new IngresJDBCMetaData.ColumnRow("column_" + c, (Integer)type[0], (String)type[1],
+					(Integer)type[2], (Integer)type[3], null, c != 0, false));
+			}
+			this.columnRows.add(columns);
+			this.primaryKeyRows.add(Collections.singletonList(new IngresJDBCMetaData.KeyRow("pk_" + t,
+				"column_0")));
+			this.indexRows.add(Collections.singletonList(new IngresJDBCMetaData.IndexRow("idx_" + t, "column_1",
+				false)));
+		}
+	}
+	
+	@Benchmark
+	public void buildTableMetaData(final Blackhole blackhole) throws Exception
+	{
+		for(int t = 0; t < this.tables.length; t++)
+		{
+			blackhole.consume(this.metaData.getTableMetaData(this.tables[t], DBMetaData.INDICES,
+				this.columnRows.get(t), this.primaryKeyRows.get(t), this.indexRows.get(t), this.defaultValueMap));
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Measures the mapping of Ingres catalog types to JDBC types, which runs once per column while table metadata is
+ * built, computed per call and looked up in the tables of {@link IngresTypeMapping}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class IngresTypeMappingBenchmark
+{
+	private static final int[] INGRES_TYPES = {3, 4, 5, 6, 7, 8, 9, 10, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27,
+		28, 30, 31, 32, 37, 38};
+	private static final int[] LENGTHS = {1, 2, 4, 8};
+	
+	private static final String[] TYPE_NAMES = {"integer", "varchar", "decimal", "long varchar", "ingresdate",
+		"timestamp with time zone", "interval day to second", "nvarchar", "byte varying", "boolean"};
+	
+	@Benchmark
+	public void convToJavaType(final Blackhole blackhole)
+	{
+		for(final int ingresType : INGRES_TYPES)
+		{
+			for(final int length : LENGTHS)
+			{
+				blackhole.consume(IngresJDBCMetaData.convToJavaType(ingresType, length));
+			}
+		}
+	}
+	
+	@Benchmark
+	public void colSize(final Blackhole blackhole) throws SQLException
+	{
+		for(final int ingresType : INGRES_TYPES)
+		{
+			for(final int length : LENGTHS)
+			{
+				final int sqlType = IngresJDBCMetaData.convToJavaType(ingresType, length);
+				blackhole.consume(IngresJDBCMetaData.colSize(ingresType, sqlType));
+			}
+		}
+	}
+	
+	@Benchmark
+	public void getIngresType(final Blackhole blackhole)
+	{
+		for(final String typeName : TYPE_NAMES)
+		{
+			blackhole.consume(IngresJDBCMetaData.getIngresType(typeName));
+		}
+	}
+	
+	@Benchmark
+	public void mappedSqlType(final Blackhole blackhole)
+	{
+		for(final int ingresType : INGRES_TYPES)
+		{
+			for(final int length : LENGTHS)
+			{
+				blackhole.consume(IngresTypeMapping.sqlType(ingresType, length));
+			}
+		}
+	}
+	
+	@Benchmark
+	public void mappedColumnSize(final Blackhole blackhole)
+	{
+		for(final int ingresType : INGRES_TYPES)
+		{
+			for(final int length : LENGTHS)
+			{
+				blackhole.consume(IngresTypeMapping.columnSize(ingresType, length));
+			}
+		}
+	}
+	
+	@Benchmark
+	public void mappedIngresType(final Blackhole blackhole)
+	{
+		for(final String typeName : TYPE_NAMES)
+		{
+			blackhole.consume(IngresTypeMapping.ingresType(typeName));
+		}
+	}
+}
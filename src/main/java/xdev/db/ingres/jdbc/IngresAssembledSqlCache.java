@@ -0,0 +1,237 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Bounded LRU cache of SQL text assembled by {@link IngresDMLAssembler}.
+ * <p>
+ * Entries are keyed by the identity of the query object together with the assembly flags and separators. Query
+ * objects are mutable, so a query which is changed after it has been assembled must be removed with
+ * {@link #invalidate(Object)}; otherwise the previously assembled text is returned. The cache is disabled as long
+ * as its capacity is 0.
+ */
+public class IngresAssembledSqlCache
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final LinkedHashMap<Key, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private volatile int capacity;
+	
+	// guarded by this
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////////
+	
+	public IngresAssembledSqlCache(final int capacity)
+	{
+		this.capacity = Math.max(0, capacity);
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// getters //
+	// ///////////////////
+	
+	public boolean isEnabled()
+	{
+		return this.capacity > 0;
+	}
+	
+	public int getCapacity()
+	{
+		return this.capacity;
+	}
+	
+	public synchronized int size()
+	{
+		return this.entries.size();
+	}
+	
+	public synchronized long getHitCount()
+	{
+		return this.hitCount;
+	}
+	
+	public synchronized long getMissCount()
+	{
+		return this.missCount;
+	}
+	
+	public synchronized long getEvictionCount()
+	{
+		return this.evictionCount;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// setters //
+	// ///////////////////
+	
+	/**
+	 * Sets the maximum number of cached statements, 0 disables and clears the cache.
+	 */
+	public synchronized void setCapacity(final int capacity)
+	{
+		this.capacity = Math.max(0, capacity);
+		this.evict();
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	/**
+	 * @return the cached SQL text or <code>null</code>
+	 */
+	public synchronized String get(
+		final Object query, final int flags, final int indentLevel,
+		final String clauseSeperator, final String newLine)
+	{
+		final String sql = this.entries.get(new Key(query, flags, indentLevel, clauseSeperator, newLine));
+		if(sql != null)
+		{
+			this.hitCount++;
+		}
+		else
+		{
+			this.missCount++;
+		}
+		return sql;
+	}
+	
+	public synchronized void put(
+		final Object query, final int flags, final int indentLevel,
+		final String clauseSeperator, final String newLine, final String sql)
+	{
+		if(this.capacity == 0)
+		{
+			return;
+		}
+		this.entries.put(new Key(query, flags, indentLevel, clauseSeperator, newLine), sql);
+		this.evict();
+	}
+	
+	/**
+	 * Removes all entries of <code>query</code>, to be called after the query object has been modified.
+	 */
+	public synchronized void invalidate(final Object query)
+	{
+		this.entries.keySet().removeIf(key -> key.query == query);
+	}
+	
+	public synchronized void clear()
+	{
+		this.entries.clear();
+	}
+	
+	public synchronized void resetStatistics()
+	{
+		this.hitCount = 0;
+		this.missCount = 0;
+		this.evictionCount = 0;
+	}
+	
+	private void evict()
+	{
+		final Iterator<Map.Entry<Key, String>> it = this.entries.entrySet().iterator();
+		for(int surplus = this.entries.size() - this.capacity; surplus > 0 && it.hasNext(); surplus--)
+		{
+			it.next();
+			it.remove();
+			this.evictionCount++;
+		}
+	}
+	
+	@Override
+	public synchronized String toString()
+	{
+		return "size=" + this.entries.size() + ", capacity=" + this.capacity + ", hits=" + this.hitCount
+			+ ", misses=" + this.missCount + ", evictions=" + this.evictionCount;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// member types //
+	// ///////////////////
+	
+	private static final class Key
+	{
+		final Object query;
+		final int flags;
+		final int indentLevel;
+		final String clauseSeperator;
+		final String newLine;
+		final int hash;
+		
+		Key(
+			final Object query, final int flags, final int indentLevel,
+			final String clauseSeperator, final String newLine)
+		{
+			this.query = query;
+			this.flags = flags;
+			this.indentLevel = indentLevel;
+			this.clauseSeperator = clauseSeperator;
+			this.newLine = newLine;
+			
+			int hash = System.identityHashCode(query);
+			hash = 31 * hash + flags;
+			hash = 31 * hash + indentLevel;
+			hash = 31 * hash + (clauseSeperator != null ? clauseSeperator.hashCode() : 0);
+			hash = 31 * hash + (newLine != null ? newLine.hashCode() : 0);
+			this.hash = hash;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+		
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if(this == obj)
+			{
+				return true;
+			}
+			if(!(obj instanceof Key))
+			{
+				return false;
+			}
+			final Key other = (Key)obj;
+			return this.query == other.query
+				&& this.flags == other.flags
+				&& this.indentLevel == other.indentLevel
+				&& equals(this.clauseSeperator, other.clauseSeperator)
+				&& equals(this.newLine, other.newLine);
+		}
+		
+		private static boolean equals(final String a, final String b)
+		{
+			return a == null ? b == null : a.equals(b);
+		}
+	}
+}
@@ -0,0 +1,341 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import xdev.db.DBException;
+
+
+/**
+ * Runs statements of an {@link IngresJDBCDataSource} asynchronously and completes a {@link CompletableFuture} with
+ * the result.
+ * <p>
+ * At most {@link IngresJDBCDataSource#CONNECTION_POOL_MAX_SIZE} tasks hold a connection at a time. Further tasks
+ * wait in a queue without occupying a thread, so any number of requests can be in flight. On Java 21 and later the
+ * tasks run on virtual threads unless another executor is given.
+ * <p>
+ * Cancelling a future or exceeding its timeout cancels the running statement with {@link java.sql.Statement#cancel()};
+ * a task which has not started yet is dropped.
+ */
+public class IngresAsyncExecutor implements AutoCloseable
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final IngresJDBCDataSource dataSource;
+	private final Executor executor;
+	private final ExecutorService ownExecutor;
+	private final ScheduledExecutorService timer;
+	private final Semaphore permits;
+	private final Queue<Task<?>> pending = new ConcurrentLinkedQueue<>();
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////////
+	
+	/**
+	 * Runs the tasks on virtual threads if the runtime provides them, on daemon threads otherwise.
+	 */
+	public IngresAsyncExecutor(final IngresJDBCDataSource dataSource)
+	{
+		this(dataSource, null);
+	}
+	
+	/**
+	 * @param executor runs the tasks, <code>null</code> for the default executor
+	 */
+	public IngresAsyncExecutor(final IngresJDBCDataSource dataSource, final Executor executor)
+	{
+		this.dataSource = dataSource;
+		this.ownExecutor = executor == null ? createDefaultExecutor() : null;
+		this.executor = executor != null ? executor : this.ownExecutor;
+		this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "Ingres async timeout");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.permits = new Semaphore(Math.max(1,
+			dataSource.getIntParameter(IngresJDBCDataSource.CONNECTION_POOL_MAX_SIZE)));
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// static methods //
+	// ///////////////////
+	
+	/**
+	 * @return <code>Executors.newVirtualThreadPerTaskExecutor()</code> on Java 21 and later, a cached pool of daemon
+	 *         threads otherwise
+	 */
+	private static ExecutorService createDefaultExecutor()
+	{
+		try
+		{
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(final ReflectiveOperationException e)
+		{
+			return Executors.newCachedThreadPool(runnable -> {
+				final Thread thread = new Thread(runnable, "Ingres async");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+	
+	private static void bind(final PreparedStatement statement, final Object[] params) throws SQLException
+	{
+		for(int i = 0; i < params.length; i++)
+		{
+			if(params[i] == null)
+			{
+				// typeless NULL, the server derives the type from the context
+				statement.setNull(i + 1, Types.NULL);
+			}
+			else
+			{
+				statement.setObject(i + 1, params[i]);
+			}
+		}
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	/**
+	 * Runs a query and completes with the value read by <code>handler</code>.
+	 *
+	 * @param timeoutMillis time until the future completes with a {@link TimeoutException}, 0 for no timeout
+	 */
+	public <T> CompletableFuture<T> query(
+		final String sql, final ResultHandler<T> handler,
+		final long timeoutMillis, final Object... params)
+	{
+		return this.submit(timeoutMillis, task -> {
+			try(final Connection connection = this.dataSource.getConnectionProvider().getConnection();
+				final PreparedStatement statement = connection.prepareStatement(sql))
+			{
+				bind(statement, params);
+				task.running(statement);
+				try(final ResultSet resultSet = statement.executeQuery())
+				{
+					return handler.handle(resultSet);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Runs an INSERT, UPDATE or DELETE in auto-commit mode.
+	 *
+	 * @param timeoutMillis time until the future completes with a {@link TimeoutException}, 0 for no timeout
+	 * @return a future of the update count
+	 */
+	public CompletableFuture<Integer> update(final String sql, final long timeoutMillis, final Object... params)
+	{
+		return this.submit(timeoutMillis, task -> {
+			try(final Connection connection = this.dataSource.getConnectionProvider().getConnection();
+				final PreparedStatement statement = connection.prepareStatement(sql))
+			{
+				bind(statement, params);
+				task.running(statement);
+				return statement.executeUpdate();
+			}
+		});
+	}
+	
+	/**
+	 * Runs blocking work, e.g. a call of {@link IngresJDBCMetaData}, within the connection limit of this executor.
+	 * Such work can be abandoned by cancelling the future, but not interrupted.
+	 */
+	public <T> CompletableFuture<T> supply(final Callable<T> work)
+	{
+		return this.submit(0, task -> work.call());
+	}
+	
+	private <T> CompletableFuture<T> submit(final long timeoutMillis, final Work<T> work)
+	{
+		final Task<T> task = new Task<>(work);
+		if(timeoutMillis > 0)
+		{
+			final ScheduledFuture<?> timeout = this.timer.schedule(() -> task.future.completeExceptionally(
+				new TimeoutException("Timeout after " + timeoutMillis + " ms")), timeoutMillis, TimeUnit.MILLISECONDS);
+			task.future.whenComplete((result, failure) -> timeout.cancel(false));
+		}
+		this.pending.add(task);
+		this.dispatch();
+		return task.future;
+	}
+	
+	/**
+	 * Starts pending tasks while connections are available.
+	 */
+	private void dispatch()
+	{
+		while(!this.pending.isEmpty() && this.permits.tryAcquire())
+		{
+			final Task<?> task = this.pending.poll();
+			if(task == null)
+			{
+				this.permits.release();
+				continue;
+			}
+			try
+			{
+				this.executor.execute(() -> {
+					try
+					{
+						task.run();
+					}
+					finally
+					{
+						this.permits.release();
+						this.dispatch();
+					}
+				});
+			}
+			catch(final RejectedExecutionException e)
+			{
+				this.permits.release();
+				task.future.completeExceptionally(e);
+			}
+		}
+	}
+	
+	/**
+	 * Stops the default executor and the timer. Pending tasks are not completed.
+	 */
+	@Override
+	public void close()
+	{
+		this.timer.shutdownNow();
+		if(this.ownExecutor != null)
+		{
+			this.ownExecutor.shutdown();
+		}
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// member types //
+	// ///////////////////
+	
+	/**
+	 * Reads the result of a query. The result set is closed afterwards.
+	 */
+	@FunctionalInterface
+	public interface ResultHandler<T>
+	{
+		T handle(ResultSet resultSet) throws SQLException;
+	}
+	
+	@FunctionalInterface
+	private interface Work<T>
+	{
+		T run(Task<T> task) throws Exception;
+	}
+	
+	private final class Task<T>
+	{
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		final Work<T> work;
+		
+		private volatile PreparedStatement statement;
+		
+		Task(final Work<T> work)
+		{
+			this.work = work;
+			// cancellation and timeout complete the future from another thread
+			this.future.whenComplete((result, failure) -> {
+				if(failure instanceof CancellationException || failure instanceof TimeoutException)
+				{
+					this.cancelStatement();
+				}
+			});
+		}
+		
+		void running(final PreparedStatement statement)
+		{
+			this.statement = statement;
+			if(this.future.isDone())
+			{
+				this.cancelStatement();
+			}
+		}
+		
+		void run()
+		{
+			if(this.future.isDone())
+			{
+				// cancelled or timed out while pending
+				return;
+			}
+			try
+			{
+				this.future.complete(this.work.run(this));
+			}
+			catch(final SQLException e)
+			{
+				this.future.completeExceptionally(new DBException(IngresAsyncExecutor.this.dataSource, e));
+			}
+			catch(final Throwable t)
+			{
+				this.future.completeExceptionally(t);
+			}
+			finally
+			{
+				this.statement = null;
+			}
+		}
+		
+		private void cancelStatement()
+		{
+			final PreparedStatement statement = this.statement;
+			if(statement != null)
+			{
+				try
+				{
+					statement.cancel();
+				}
+				catch(final SQLException e)
+				{
+					// the statement has finished or its connection is gone
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import xdev.db.DBDataSource;
+import xdev.db.DBException;
+import xdev.db.Result;
+
+
+/**
+ * Forward-only cursor over catalog rows which are ordered by table name, possibly spread over several queries
+ * whose results follow each other in that order.
+ * <p>
+ * {@link #next(String)} has to be called with ascending table names. It skips the rows of tables which are not
+ * requested and returns the rows of the requested one, so several cursors can be merge-joined on the table name
+ * while only the rows of the current table are held in memory. Names are compared with
+ * {@link String#compareTo(String)}, which matches the byte-wise collation of the Ingres catalog. A key lower than
+ * its predecessor would make the join skip rows, so it fails the cursor with a {@link DBException} instead.
+ *
+ * @param <R> the row type
+ */
+final class IngresCatalogCursor<R> implements AutoCloseable
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// member types //
+	// ///////////////////
+	
+	@FunctionalInterface
+	interface Query
+	{
+		Result execute() throws DBException;
+	}
+	
+	@FunctionalInterface
+	interface RowReader<R>
+	{
+		R read(Result result) throws DBException;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final DBDataSource<?> dataSource;
+	private final Iterator<Query> queries;
+	private final String keyColumn;
+	private final RowReader<R> reader;
+	
+	private Result result;
+	private boolean started;
+	private boolean exhausted;
+	private String key;
+	private R row;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////////
+	
+	/**
+	 * @param queries   the queries, executed one after the other when the previous result is exhausted
+	 * @param keyColumn the column holding the table name
+	 */
+	IngresCatalogCursor(
+		final DBDataSource<?> dataSource, final List<Query> queries,
+		final String keyColumn, final RowReader<R> reader)
+	{
+		this.dataSource = dataSource;
+		this.queries = queries.iterator();
+		this.keyColumn = keyColumn;
+		this.reader = reader;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	/**
+	 * Executes the first query right away instead of on the first call of {@link #next(String)}.
+	 *
+	 * @return this
+	 */
+	IngresCatalogCursor<R> open() throws DBException
+	{
+		if(!this.started)
+		{
+			this.started = true;
+			this.advance();
+		}
+		return this;
+	}
+	
+	/**
+	 * @return the rows of <code>tableName</code>, empty if there are none
+	 */
+	List<R> next(final String tableName) throws DBException
+	{
+		this.open();
+		while(!this.exhausted && this.key.compareTo(tableName) < 0)
+		{
+			this.advance();
+		}
+		
+		List<R> rows = Collections.emptyList();
+		while(!this.exhausted && this.key.equals(tableName))
+		{
+			if(rows.isEmpty())
+			{
+				rows = new ArrayList<>();
+			}
+			rows.add(this.row);
+			this.advance();
+		}
+		return rows;
+	}
+	
+	/**
+	 * Moves to the next row, executing the next query if necessary.
+	 *
+	 * @throws DBException if the key of the row is lower than the previous one
+	 */
+	private void advance() throws DBException
+	{
+		while(this.result == null || !this.result.next())
+		{
+			this.close();
+			if(!this.queries.hasNext())
+			{
+				this.exhausted = true;
+				this.key = null;
+				this.row = null;
+				return;
+			}
+			this.result = this.queries.next().execute();
+		}
+		final String previousKey = this.key;
+		this.key = this.result.getString(this.keyColumn).trim();
+		if(previousKey != null && this.key.compareTo(previousKey) < 0)
+		{
+			throw new DBException(this.dataSource, "Catalog rows out of order: " + this.keyColumn + " '" + this.key
+				+ "' follows '" + previousKey + "'");
+		}
+		this.row = this.reader.read(this.result);
+	}
+	
+	@Override
+	public void close() throws DBException
+	{
+		if(this.result != null)
+		{
+			final Result result = this.result;
+			this.result = null;
+			result.close();
+		}
+	}
+}
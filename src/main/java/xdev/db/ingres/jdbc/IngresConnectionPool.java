@@ -0,0 +1,994 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Bounded pool of physical Ingres connections.
+ * <p>
+ * Connections handed out by {@link #getConnection()} are proxies; closing them returns the physical connection to
+ * the pool. Idle connections are reused last-in-first-out, so the warmest connection is always taken first and
+ * surplus connections age out through the idle timeout.
+ * <p>
+ * A returned connection gets back the auto-commit mode, read-only flag, transaction isolation and holdability it
+ * had when it was opened. Connections whose catalog, schema, type map, client info or network timeout were changed
+ * are closed instead of being reused. Statements, result sets and database metadata obtained from a borrowed
+ * connection report the borrowed connection, never the physical one.
+ */
+public class IngresConnectionPool implements AutoCloseable
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// constants //
+	// ///////////////////
+	
+	/**
+	 * Connections that were returned less than this many milliseconds ago are handed out without running the
+	 * validation query again.
+	 */
+	protected static final long VALIDATION_BYPASS_WINDOW = 500;
+	
+	protected static final int VALIDATION_TIMEOUT_SECONDS = 5;
+	
+	protected static final long HOUSEKEEPING_PERIOD = 30000;
+	
+	/**
+	 * Closed statements are dropped from the tracking list of a borrowed connection once it reaches this size.
+	 */
+	protected static final int PRUNE_THRESHOLD = 64;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final ConnectionFactory factory;
+	private final int minSize;
+	private final int maxSize;
+	private final long connectionTimeout;
+	private final long idleTimeout;
+	private final long maxLifetime;
+	private final String validationQuery;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = this.lock.newCondition();
+	private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+	private final ScheduledExecutorService housekeeper;
+	
+	// guarded by lock
+	private int total;
+	private int active;
+	private boolean closed;
+	
+	private long acquireCount;
+	private long waitNanos;
+	private long maxWaitNanos;
+	private long timeoutCount;
+	private long connectCount;
+	private long connectNanos;
+	private long maxConnectNanos;
+	private long discardCount;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////////
+	
+	/**
+	 * @param factory           creates the physical connections
+	 * @param minSize           number of connections kept open even if idle
+	 * @param maxSize           upper bound of open connections
+	 * @param connectionTimeout milliseconds to wait for a free connection, 0 waits forever
+	 * @param idleTimeout       milliseconds after which surplus idle connections are closed, 0 disables
+	 * @param maxLifetime       milliseconds after which a connection is retired, 0 disables
+	 * @param validationQuery   query run before an idle connection is handed out, <code>null</code> uses
+	 *                          {@link Connection#isValid(int)}
+	 */
+	public IngresConnectionPool(
+		final ConnectionFactory factory, final int minSize, final int maxSize,
+		final long connectionTimeout, final long idleTimeout, final long maxLifetime,
+		final String validationQuery)
+	{
+		if(maxSize < 1)
+		{
+			throw new IllegalArgumentException("maxSize < 1");
+		}
+		
+		this.factory = factory;
+		this.maxSize = maxSize;
+		this.minSize = Math.max(0, Math.min(minSize, maxSize));
+		this.connectionTimeout = Math.max(0, connectionTimeout);
+		this.idleTimeout = Math.max(0, idleTimeout);
+		this.maxLifetime = Math.max(0, maxLifetime);
+		this.validationQuery = validationQuery != null && validationQuery.trim().length() > 0
+			? validationQuery
+			: null;
+		
+		this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "Ingres connection pool housekeeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.housekeeper.scheduleWithFixedDelay(this::houseKeeping, HOUSEKEEPING_PERIOD, HOUSEKEEPING_PERIOD,
+			TimeUnit.MILLISECONDS);
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	/**
+	 * Borrows a connection from the pool, opening a new one if none is idle and the pool is not exhausted.
+	 * Closing the returned connection hands it back to the pool.
+	 *
+	 * @return a pooled connection
+	 * @throws SQLTimeoutException if no connection became available within the connection timeout
+	 * @throws SQLException        if a new connection could not be opened
+	 */
+	public Connection getConnection() throws SQLException
+	{
+		final long start = System.nanoTime();
+		final long deadline = this.connectionTimeout > 0
+			? start + TimeUnit.MILLISECONDS.toNanos(this.connectionTimeout)
+			: Long.MAX_VALUE;
+		
+		PooledConnection pooled = null;
+		while(pooled == null)
+		{
+			final PooledConnection candidate = this.reserve(start, deadline);
+			if(candidate == null)
+			{
+				// a slot for a new physical connection has been reserved
+				pooled = this.connect();
+			}
+			else if(this.isExpired(candidate, System.currentTimeMillis()) || !this.validate(candidate))
+			{
+				this.discard(candidate);
+			}
+			else
+			{
+				pooled = candidate;
+			}
+		}
+		
+		return pooled.borrow();
+	}
+	
+	/**
+	 * Opens connections until the configured minimum size is reached.
+	 *
+	 * @throws SQLException if a connection could not be opened
+	 */
+	public void fillToMinimum() throws SQLException
+	{
+		for(;;)
+		{
+			this.lock.lock();
+			try
+			{
+				if(this.closed || this.total >= this.minSize)
+				{
+					return;
+				}
+				this.total++;
+				this.active++;
+			}
+			finally
+			{
+				this.lock.unlock();
+			}
+			
+			final PooledConnection pooled = this.connect();
+			this.lock.lock();
+			try
+			{
+				this.active--;
+				this.idle.addFirst(pooled);
+				this.available.signal();
+			}
+			finally
+			{
+				this.lock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * @return a snapshot of the current pool state and the accumulated counters
+	 */
+	public Statistics getStatistics()
+	{
+		this.lock.lock();
+		try
+		{
+			return new Statistics(this.total, this.active, this.idle.size(), this.lock.getWaitQueueLength(
+				this.available), this.acquireCount, this.waitNanos, this.maxWaitNanos, this.timeoutCount,
+				this.connectCount, this.connectNanos, this.maxConnectNanos, this.discardCount);
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Closes all idle connections and rejects further requests. Borrowed connections are closed when they are
+	 * returned.
+	 */
+	@Override
+	public void close()
+	{
+		final List<PooledConnection> toClose;
+		this.lock.lock();
+		try
+		{
+			if(this.closed)
+			{
+				return;
+			}
+			this.closed = true;
+			toClose = new ArrayList<>(this.idle);
+			this.total -= this.idle.size();
+			this.idle.clear();
+			this.available.signalAll();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		
+		this.housekeeper.shutdownNow();
+		for(final PooledConnection pooled : toClose)
+		{
+			pooled.closePhysical();
+		}
+	}
+	
+	/**
+	 * Takes an idle connection or reserves a slot for a new one (returns <code>null</code>), waiting if the pool
+	 * is exhausted.
+	 */
+	private PooledConnection reserve(final long start, final long deadline) throws SQLException
+	{
+		this.lock.lock();
+		try
+		{
+			for(;;)
+			{
+				if(this.closed)
+				{
+					throw new SQLException("Connection pool has been closed");
+				}
+				
+				final PooledConnection pooled = this.idle.pollFirst();
+				if(pooled != null || this.total < this.maxSize)
+				{
+					if(pooled == null)
+					{
+						this.total++;
+					}
+					this.active++;
+					
+					final long waited = System.nanoTime() - start;
+					this.acquireCount++;
+					this.waitNanos += waited;
+					this.maxWaitNanos = Math.max(this.maxWaitNanos, waited);
+					return pooled;
+				}
+				
+				final long remaining = deadline - System.nanoTime();
+				if(remaining <= 0)
+				{
+					this.timeoutCount++;
+					throw new SQLTimeoutException("No Ingres connection available within "
+						+ this.connectionTimeout + " ms (max pool size " + this.maxSize + ")");
+				}
+				try
+				{
+					this.available.awaitNanos(remaining);
+				}
+				catch(final InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while waiting for a pooled connection", e);
+				}
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Opens a physical connection for a previously reserved slot.
+	 */
+	private PooledConnection connect() throws SQLException
+	{
+		final long start = System.nanoTime();
+		boolean success = false;
+		try
+		{
+			final Connection physical = this.factory.connect();
+			final long elapsed = System.nanoTime() - start;
+			
+			final PooledConnection pooled;
+			try
+			{
+				pooled = new PooledConnection(physical);
+			}
+			catch(final SQLException e)
+			{
+				physical.close();
+				throw e;
+			}
+			
+			this.lock.lock();
+			try
+			{
+				this.connectCount++;
+				this.connectNanos += elapsed;
+				this.maxConnectNanos = Math.max(this.maxConnectNanos, elapsed);
+			}
+			finally
+			{
+				this.lock.unlock();
+			}
+			
+			success = true;
+			return pooled;
+		}
+		finally
+		{
+			if(!success)
+			{
+				this.releaseSlot();
+			}
+		}
+	}
+	
+	private boolean validate(final PooledConnection pooled)
+	{
+		if(System.currentTimeMillis() - pooled.lastReturned < VALIDATION_BYPASS_WINDOW)
+		{
+			return true;
+		}
+		
+		try
+		{
+			if(this.validationQuery == null)
+			{
+				return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+			}
+			
+			try(final Statement statement = pooled.physical.createStatement())
+			{
+				statement.setQueryTimeout(VALIDATION_TIMEOUT_SECONDS);
+				statement.execute(this.validationQuery);
+			}
+			return true;
+		}
+		catch(final SQLException e)
+		{
+			return false;
+		}
+	}
+	
+	private static boolean isClosed(final Statement statement)
+	{
+		try
+		{
+			return statement.isClosed();
+		}
+		catch(final SQLException e)
+		{
+			return true;
+		}
+	}
+	
+	/**
+	 * Wraps statements, result sets and database metadata returned by a JDBC method in a {@link LogicalObject}.
+	 *
+	 * @param statement the handle of the statement which returned <code>result</code>, if any
+	 */
+	private static Object wrap(
+		final Object result, final Class<?> returnType,
+		final Connection connection, final Statement statement)
+	{
+		final Class<?> type;
+		if(result instanceof ResultSet && ResultSet.class.isAssignableFrom(returnType))
+		{
+			type = ResultSet.class;
+		}
+		else if(result instanceof DatabaseMetaData && DatabaseMetaData.class.isAssignableFrom(returnType))
+		{
+			type = DatabaseMetaData.class;
+		}
+		else if(result instanceof Statement && Statement.class.isAssignableFrom(returnType))
+		{
+			// e.g. ResultSet.getStatement returns a prepared statement as Statement
+			type = result instanceof CallableStatement ? CallableStatement.class
+				: result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+		}
+		else
+		{
+			return result;
+		}
+		return Proxy.newProxyInstance(
+			IngresConnectionPool.class.getClassLoader(),
+			new Class<?>[]{type},
+			new LogicalObject(result, connection, result instanceof ResultSet ? statement : null));
+	}
+	
+	private boolean isExpired(final PooledConnection pooled, final long now)
+	{
+		return this.maxLifetime > 0 && now - pooled.created >= this.maxLifetime;
+	}
+	
+	/**
+	 * Called when a borrowed connection is closed by its user.
+	 */
+	private void giveBack(final PooledConnection pooled)
+	{
+		boolean reusable = !this.isExpired(pooled, System.currentTimeMillis());
+		if(reusable)
+		{
+			try
+			{
+				if(pooled.physical.isClosed())
+				{
+					reusable = false;
+				}
+				else
+				{
+					reusable = pooled.reset();
+				}
+			}
+			catch(final SQLException e)
+			{
+				reusable = false;
+			}
+		}
+		
+		if(reusable)
+		{
+			this.lock.lock();
+			try
+			{
+				this.active--;
+				if(!this.closed)
+				{
+					pooled.lastReturned = System.currentTimeMillis();
+					this.idle.addFirst(pooled);
+					this.available.signal();
+					return;
+				}
+				this.total--;
+			}
+			finally
+			{
+				this.lock.unlock();
+			}
+			pooled.closePhysical();
+		}
+		else
+		{
+			this.discard(pooled);
+		}
+	}
+	
+	/**
+	 * Closes a borrowed or reserved connection and frees its slot.
+	 */
+	private void discard(final PooledConnection pooled)
+	{
+		this.lock.lock();
+		try
+		{
+			this.discardCount++;
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		this.releaseSlot();
+		pooled.closePhysical();
+	}
+	
+	private void releaseSlot()
+	{
+		this.lock.lock();
+		try
+		{
+			this.active--;
+			this.total--;
+			this.available.signal();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Retires idle connections which exceeded the idle timeout or the max lifetime and opens new ones up to the
+	 * minimum size.
+	 */
+	void houseKeeping()
+	{
+		final List<PooledConnection> toClose = new ArrayList<>();
+		this.lock.lock();
+		try
+		{
+			final long now = System.currentTimeMillis();
+			// oldest returned connections are at the tail
+			final Iterator<PooledConnection> it = this.idle.descendingIterator();
+			while(it.hasNext())
+			{
+				final PooledConnection pooled = it.next();
+				final boolean idleTooLong = this.idleTimeout > 0
+					&& now - pooled.lastReturned >= this.idleTimeout
+					&& this.total > this.minSize;
+				if(idleTooLong || this.isExpired(pooled, now))
+				{
+					it.remove();
+					this.total--;
+					toClose.add(pooled);
+				}
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		
+		for(final PooledConnection pooled : toClose)
+		{
+			pooled.closePhysical();
+		}
+		
+		try
+		{
+			this.fillToMinimum();
+		}
+		catch(final SQLException e)
+		{
+			// retried at the next run
+		}
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// member types //
+	// ///////////////////
+	
+	/**
+	 * Opens physical connections for the pool.
+	 */
+	@FunctionalInterface
+	public interface ConnectionFactory
+	{
+		Connection connect() throws SQLException;
+	}
+	
+	/**
+	 * Immutable snapshot of the pool state. Times are reported in milliseconds.
+	 */
+	public static class Statistics
+	{
+		private final int total;
+		private final int active;
+		private final int idle;
+		private final int waiting;
+		private final long acquireCount;
+		private final long waitNanos;
+		private final long maxWaitNanos;
+		private final long timeoutCount;
+		private final long connectCount;
+		private final long connectNanos;
+		private final long maxConnectNanos;
+		private final long discardCount;
+		
+		Statistics(
+			final int total, final int active, final int idle, final int waiting,
+			final long acquireCount, final long waitNanos, final long maxWaitNanos, final long timeoutCount,
+			final long connectCount, final long connectNanos, final long maxConnectNanos, final long discardCount)
+		{
+			this.total = total;
+			this.active = active;
+			this.idle = idle;
+			this.waiting = waiting;
+			this.acquireCount = acquireCount;
+			this.waitNanos = waitNanos;
+			this.maxWaitNanos = maxWaitNanos;
+			this.timeoutCount = timeoutCount;
+			this.connectCount = connectCount;
+			this.connectNanos = connectNanos;
+			this.maxConnectNanos = maxConnectNanos;
+			this.discardCount = discardCount;
+		}
+		
+		/**
+		 * @return open physical connections, including those currently being opened
+		 */
+		public int getTotalConnections()
+		{
+			return this.total;
+		}
+		
+		public int getActiveConnections()
+		{
+			return this.active;
+		}
+		
+		public int getIdleConnections()
+		{
+			return this.idle;
+		}
+		
+		/**
+		 * @return threads currently blocked waiting for a connection
+		 */
+		public int getWaitingThreads()
+		{
+			return this.waiting;
+		}
+		
+		public long getAcquireCount()
+		{
+			return this.acquireCount;
+		}
+		
+		public double getAverageWaitTime()
+		{
+			return average(this.waitNanos, this.acquireCount);
+		}
+		
+		public double getMaxWaitTime()
+		{
+			return this.maxWaitNanos / 1e6;
+		}
+		
+		public long getTimeoutCount()
+		{
+			return this.timeoutCount;
+		}
+		
+		/**
+		 * @return physical connections opened since the pool was created
+		 */
+		public long getConnectCount()
+		{
+			return this.connectCount;
+		}
+		
+		public double getAverageConnectTime()
+		{
+			return average(this.connectNanos, this.connectCount);
+		}
+		
+		public double getMaxConnectTime()
+		{
+			return this.maxConnectNanos / 1e6;
+		}
+		
+		/**
+		 * @return connections closed because they were broken, failed validation or exceeded their lifetime
+		 */
+		public long getDiscardCount()
+		{
+			return this.discardCount;
+		}
+		
+		private static double average(final long nanos, final long count)
+		{
+			return count == 0 ? 0 : nanos / 1e6 / count;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return String.format(
+				"total=%d, active=%d, idle=%d, waiting=%d, acquired=%d, avgWait=%.3fms, maxWait=%.3fms, "
+					+ "timeouts=%d, connects=%d, avgConnect=%.3fms, maxConnect=%.3fms, discarded=%d",
+				this.total, this.active, this.idle, this.waiting, this.acquireCount, this.getAverageWaitTime(),
+				this.getMaxWaitTime(), this.timeoutCount, this.connectCount, this.getAverageConnectTime(),
+				this.getMaxConnectTime(), this.discardCount);
+		}
+	}
+	
+	/**
+	 * Physical connection with its pool bookkeeping.
+	 */
+	private final class PooledConnection
+	{
+		final Connection physical;
+		final long created = System.currentTimeMillis();
+		volatile long lastReturned = this.created;
+		
+		// session state at creation, restored when the connection is given back
+		private final boolean autoCommit;
+		private final boolean readOnly;
+		private final int transactionIsolation;
+		private final int holdability;
+		
+		// set by the borrower, guarded by the borrow
+		boolean stateChanged;
+		boolean stateLost;
+		
+		PooledConnection(final Connection physical) throws SQLException
+		{
+			this.physical = physical;
+			this.autoCommit = physical.getAutoCommit();
+			this.readOnly = physical.isReadOnly();
+			this.transactionIsolation = physical.getTransactionIsolation();
+			this.holdability = physical.getHoldability();
+		}
+		
+		/**
+		 * Rolls back an open transaction and restores the session state of the creation, so nothing a borrower
+		 * changed leaks into the next borrow.
+		 *
+		 * @return <code>false</code> if the state cannot be restored and the connection has to be discarded
+		 */
+		boolean reset() throws SQLException
+		{
+			if(this.stateLost)
+			{
+				return false;
+			}
+			
+			if(!this.physical.getAutoCommit())
+			{
+				// never leak an open transaction to the next borrower
+				this.physical.rollback();
+			}
+			if(this.physical.getAutoCommit() != this.autoCommit)
+			{
+				this.physical.setAutoCommit(this.autoCommit);
+			}
+			
+			if(this.stateChanged)
+			{
+				if(this.physical.isReadOnly() != this.readOnly)
+				{
+					this.physical.setReadOnly(this.readOnly);
+				}
+				if(this.physical.getTransactionIsolation() != this.transactionIsolation)
+				{
+					this.physical.setTransactionIsolation(this.transactionIsolation);
+				}
+				if(this.physical.getHoldability() != this.holdability)
+				{
+					this.physical.setHoldability(this.holdability);
+				}
+				this.stateChanged = false;
+			}
+			return true;
+		}
+		
+		Connection borrow()
+		{
+			return (Connection)Proxy.newProxyInstance(
+				IngresConnectionPool.class.getClassLoader(),
+				new Class<?>[]{Connection.class},
+				new LogicalConnection(this));
+		}
+		
+		void closePhysical()
+		{
+			try
+			{
+				this.physical.close();
+			}
+			catch(final SQLException e)
+			{
+				// connection is dropped anyway
+			}
+		}
+	}
+	
+	/**
+	 * Handle given to the user of a borrowed connection. Statements created through it are closed when the handle
+	 * is closed, so a sloppy caller cannot leak cursors into the next borrow.
+	 */
+	private final class LogicalConnection implements InvocationHandler
+	{
+		private final PooledConnection pooled;
+		private final List<Statement> statements = new ArrayList<>();
+		private boolean logicallyClosed;
+		
+		LogicalConnection(final PooledConnection pooled)
+		{
+			this.pooled = pooled;
+		}
+		
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable
+		{
+			final String name = method.getName();
+			switch(name)
+			{
+				case "close":
+					this.close();
+					return null;
+				case "isClosed":
+					return this.logicallyClosed || this.pooled.physical.isClosed();
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Pooled[" + this.pooled.physical + "]";
+				case "unwrap":
+					if(((Class<?>)args[0]).isInstance(proxy))
+					{
+						return proxy;
+					}
+					break;
+				default:
+			}
+			
+			if(this.logicallyClosed)
+			{
+				throw new SQLException("Connection has already been returned to the pool");
+			}
+			
+			switch(name)
+			{
+				case "setReadOnly":
+				case "setTransactionIsolation":
+				case "setHoldability":
+					this.pooled.stateChanged = true;
+					break;
+				case "setCatalog":
+				case "setSchema":
+				case "setTypeMap":
+				case "setClientInfo":
+				case "setNetworkTimeout":
+					// not restorable, the connection is discarded when it is given back
+					this.pooled.stateLost = true;
+					break;
+				default:
+			}
+			
+			final Object result;
+			try
+			{
+				result = method.invoke(this.pooled.physical, args);
+			}
+			catch(final InvocationTargetException e)
+			{
+				throw e.getCause();
+			}
+			
+			if(result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType()))
+			{
+				if(this.statements.size() >= PRUNE_THRESHOLD)
+				{
+					this.statements.removeIf(IngresConnectionPool::isClosed);
+				}
+				this.statements.add((Statement)result);
+			}
+			return wrap(result, method.getReturnType(), (Connection)proxy, null);
+		}
+		
+		private void close()
+		{
+			if(this.logicallyClosed)
+			{
+				return;
+			}
+			this.logicallyClosed = true;
+			
+			for(final Statement statement : this.statements)
+			{
+				try
+				{
+					statement.close();
+				}
+				catch(final SQLException e)
+				{
+					// already closed or connection broken, validation will tell
+				}
+			}
+			this.statements.clear();
+			
+			IngresConnectionPool.this.giveBack(this.pooled);
+		}
+	}
+	
+	/**
+	 * Statement, result set or database metadata obtained through a {@link LogicalConnection}. It reports the
+	 * handle instead of the physical connection as its connection and wraps the statements and result sets it
+	 * hands out in turn, so the physical connection cannot be reached and closed by the borrower.
+	 */
+	private static final class LogicalObject implements InvocationHandler
+	{
+		private final Object target;
+		private final Connection connection;
+		// the handle of the statement which created a result set, null if it has to be wrapped on request
+		private final Statement statement;
+		
+		LogicalObject(final Object target, final Connection connection, final Statement statement)
+		{
+			this.target = target;
+			this.connection = connection;
+			this.statement = statement;
+		}
+		
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable
+		{
+			switch(method.getName())
+			{
+				case "getConnection":
+					return this.connection;
+				case "getStatement":
+					if(this.statement != null)
+					{
+						return this.statement;
+					}
+					break;
+				case "unwrap":
+					if(((Class<?>)args[0]).isInstance(proxy))
+					{
+						return proxy;
+					}
+					break;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Pooled[" + this.target + "]";
+				default:
+			}
+			
+			final Object result;
+			try
+			{
+				result = method.invoke(this.target, args);
+			}
+			catch(final InvocationTargetException e)
+			{
+				throw e.getCause();
+			}
+			return wrap(result, method.getReturnType(), this.connection,
+				proxy instanceof Statement ? (Statement)proxy : null);
+		}
+	}
+}
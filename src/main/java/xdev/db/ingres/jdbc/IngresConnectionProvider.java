@@ -0,0 +1,152 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import com.xdev.jadoth.sqlengine.exceptions.SQLEngineException;
+import com.xdev.jadoth.sqlengine.interfaces.ConnectionProvider;
+
+
+/**
+ * {@link ConnectionProvider} which hands out connections of an {@link IngresConnectionPool} instead of opening a
+ * new physical connection for every request.
+ * <p>
+ * Physical connections are wrapped by {@link IngresInstrumentedConnection} while the
+ * {@link IngresMetricsListener} of the {@link IngresDbms}, the {@link IngresFetchSize} or the statement cache is
+ * enabled.
+ */
+public class IngresConnectionProvider extends ConnectionProvider.Body<IngresDbms>
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final IngresConnectionPool pool;
+	private final IngresFetchSize fetchSize;
+	private final int statementCacheSize;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////
+	
+	/**
+	 * Creates a provider which opens a new physical connection for every request.
+	 *
+	 * @param statementCacheSize idle prepared statements kept per connection, 0 disables the cache
+	 */
+	public IngresConnectionProvider(
+		final IngresConnectionInformation connectionInformation,
+		final IngresFetchSize fetchSize, final int statementCacheSize)
+	{
+		super(connectionInformation);
+		this.pool = null;
+		this.fetchSize = fetchSize;
+		this.statementCacheSize = statementCacheSize;
+	}
+	
+	/**
+	 * @see IngresConnectionPool#IngresConnectionPool(IngresConnectionPool.ConnectionFactory, int, int, long, long,
+	 * long, String)
+	 */
+	public IngresConnectionProvider(
+		final IngresConnectionInformation connectionInformation,
+		final int minSize, final int maxSize,
+		final long connectionTimeout, final long idleTimeout, final long maxLifetime,
+		final String validationQuery, final IngresFetchSize fetchSize,
+		final int statementCacheSize)
+	{
+		super(connectionInformation);
+		this.fetchSize = fetchSize;
+		this.statementCacheSize = statementCacheSize;
+		this.pool = new IngresConnectionPool(this::openPhysicalConnection, minSize, maxSize, connectionTimeout,
+			idleTimeout, maxLifetime, validationQuery);
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// getters //
+	// ///////////////////
+	
+	/**
+	 * @return the pool, or <code>null</code> if connections are not pooled
+	 */
+	public IngresConnectionPool getPool()
+	{
+		return this.pool;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// override methods //
+	// ///////////////////
+	
+	/**
+	 * @see ConnectionProvider#getConnection()
+	 */
+	@Override
+	public Connection getConnection()
+	{
+		try
+		{
+			return this.pool != null
+				? this.pool.getConnection()
+				: this.openPhysicalConnection();
+		}
+		catch(final SQLException e)
+		{
+			throw new SQLEngineException(e);
+		}
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	private Connection openPhysicalConnection() throws SQLException
+	{
+		final IngresDbms dbms = this.getDbmsAdaptor();
+		final IngresMetricsListener metrics = dbms.getMetricsListener();
+		if(!metrics.isEnabled())
+		{
+			return this.fetchSize.isEnabled() || this.statementCacheSize > 0
+				? IngresInstrumentedConnection.wrap(this.connect(), dbms, this.fetchSize, this.statementCacheSize)
+				: this.connect();
+		}
+		
+		final long start = System.nanoTime();
+		final Connection connection = this.connect();
+		metrics.connectionOpened(System.nanoTime() - start);
+		return IngresInstrumentedConnection.wrap(connection, dbms, this.fetchSize, this.statementCacheSize);
+	}
+	
+	private Connection connect() throws SQLException
+	{
+		try
+		{
+			return super.getConnection();
+		}
+		catch(final SQLEngineException e)
+		{
+			if(e.getCause() instanceof SQLException)
+			{
+				throw (SQLException)e.getCause();
+			}
+			throw e;
+		}
+	}
+}
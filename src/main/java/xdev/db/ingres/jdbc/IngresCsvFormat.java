@@ -0,0 +1,291 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Delimited text format used by {@link IngresExport} and {@link IngresImport}.
+ * <p>
+ * A field is quoted if it contains the delimiter, the quote character or a line break; quotes inside a quoted field
+ * are doubled. <code>null</code> is written as an empty field, the empty string as an empty quoted field, so both
+ * survive a round trip. Records end with <code>\n</code>; an empty line therefore is a record with a single
+ * <code>null</code> field.
+ */
+public class IngresCsvFormat
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// constants //
+	// ///////////////////
+	
+	/**
+	 * Comma separated, double quotes, with header record.
+	 */
+	public static final IngresCsvFormat DEFAULT = new IngresCsvFormat(',', '"', true);
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final char delimiter;
+	private final char quote;
+	private final boolean header;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////////
+	
+	/**
+	 * @param header whether the first record holds the column names
+	 */
+	public IngresCsvFormat(final char delimiter, final char quote, final boolean header)
+	{
+		if(delimiter == quote || delimiter == '\n' || delimiter == '\r')
+		{
+			throw new IllegalArgumentException("Invalid delimiter: " + delimiter);
+		}
+		this.delimiter = delimiter;
+		this.quote = quote;
+		this.header = header;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// getters //
+	// ///////////////////
+	
+	public char getDelimiter()
+	{
+		return this.delimiter;
+	}
+	
+	public char getQuote()
+	{
+		return this.quote;
+	}
+	
+	public boolean hasHeader()
+	{
+		return this.header;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	/**
+	 * Appends one record including the line break.
+	 */
+	public StringBuilder appendRecord(final String[] values, final StringBuilder sb)
+	{
+		for(int i = 0; i < values.length; i++)
+		{
+			if(i > 0)
+			{
+				sb.append(this.delimiter);
+			}
+			this.appendField(values[i], sb);
+		}
+		return sb.append('\n');
+	}
+	
+	private void appendField(final String value, final StringBuilder sb)
+	{
+		if(value == null)
+		{
+			return;
+		}
+		if(value.isEmpty())
+		{
+			sb.append(this.quote).append(this.quote);
+			return;
+		}
+		
+		final int length = value.length();
+		boolean quoted = false;
+		for(int i = 0; i < length && !quoted; i++)
+		{
+			final char ch = value.charAt(i);
+			quoted = ch == this.delimiter || ch == this.quote || ch == '\n' || ch == '\r';
+		}
+		if(!quoted)
+		{
+			sb.append(value);
+			return;
+		}
+		
+		sb.append(this.quote);
+		for(int i = 0; i < length; i++)
+		{
+			final char ch = value.charAt(i);
+			if(ch == this.quote)
+			{
+				sb.append(this.quote);
+			}
+			sb.append(ch);
+		}
+		sb.append(this.quote);
+	}
+	
+	/**
+	 * @return a parser reading records of this format incrementally from <code>source</code>
+	 */
+	public Parser parse(final Reader source)
+	{
+		return new Parser(source);
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// member types //
+	// ///////////////////
+	
+	/**
+	 * Incremental record parser with its own read buffer, so <code>source</code> need not be buffered.
+	 */
+	public class Parser
+	{
+		private final Reader source;
+		private final char[] buffer = new char[8192];
+		private int position;
+		private int limit;
+		
+		private final StringBuilder field = new StringBuilder();
+		private final List<String> record = new ArrayList<>();
+		private long lineNumber;
+		private long recordLineNumber;
+		
+		Parser(final Reader source)
+		{
+			this.source = source;
+		}
+		
+		/**
+		 * @return the line the last record started at, 1-based
+		 */
+		public long getLineNumber()
+		{
+			return this.recordLineNumber;
+		}
+		
+		/**
+		 * @return the next record or <code>null</code> at the end of the input
+		 * @throws IOException if reading fails or a quoted field is not terminated
+		 */
+		public String[] next() throws IOException
+		{
+			// an empty line is a record of one null field, as written for a single null column
+			int ch = this.read();
+			if(ch == -1)
+			{
+				return null;
+			}
+			
+			this.lineNumber++;
+			this.recordLineNumber = this.lineNumber;
+			this.record.clear();
+			for(;;)
+			{
+				// start of a field
+				this.field.setLength(0);
+				if(ch == IngresCsvFormat.this.quote)
+				{
+					for(;;)
+					{
+						ch = this.read();
+						if(ch == -1)
+						{
+							throw new IOException("Unterminated quoted field starting in line "
+								+ this.recordLineNumber);
+						}
+						if(ch == IngresCsvFormat.this.quote)
+						{
+							ch = this.read();
+							if(ch != IngresCsvFormat.this.quote)
+							{
+								break;
+							}
+						}
+						else if(ch == '\n')
+						{
+							this.lineNumber++;
+						}
+						this.field.append((char)ch);
+					}
+					this.record.add(this.field.toString());
+				}
+				else
+				{
+					while(ch != -1 && ch != IngresCsvFormat.this.delimiter && ch != '\n' && ch != '\r')
+					{
+						this.field.append((char)ch);
+						ch = this.read();
+					}
+					this.record.add(this.field.length() == 0 ? null : this.field.toString());
+				}
+				
+				if(ch == IngresCsvFormat.this.delimiter)
+				{
+					ch = this.read();
+					continue;
+				}
+				if(ch == '\r' && this.peek() == '\n')
+				{
+					this.read();
+				}
+				else if(ch != -1 && ch != '\n' && ch != '\r')
+				{
+					throw new IOException("Unexpected character after quoted field in line " + this.lineNumber);
+				}
+				return this.record.toArray(new String[this.record.size()]);
+			}
+		}
+		
+		private int read() throws IOException
+		{
+			if(this.position == this.limit && !this.fill())
+			{
+				return -1;
+			}
+			return this.buffer[this.position++];
+		}
+		
+		private int peek() throws IOException
+		{
+			if(this.position == this.limit && !this.fill())
+			{
+				return -1;
+			}
+			return this.buffer[this.position];
+		}
+		
+		private boolean fill() throws IOException
+		{
+			final int read = this.source.read(this.buffer, 0, this.buffer.length);
+			if(read <= 0)
+			{
+				return false;
+			}
+			this.position = 0;
+			this.limit = read;
+			return true;
+		}
+	}
+}
@@ -157,6 +157,59 @@ public class IngresDMLAssembler extends StandardDMLAssembler<IngresDbms>
 		final int flags,
 		final String clauseSeperator,
 		final String newLine)
+	{
+		final IngresMetricsListener metrics = this.getDbmsAdaptor().getMetricsListener();
+		if(!metrics.isEnabled())
+		{
+			this.assembleCachedSELECT(query, sb, indentLevel, flags, clauseSeperator, newLine);
+			return sb;
+		}
+		
+		final long start = System.nanoTime();
+		final boolean cached = this.assembleCachedSELECT(query, sb, indentLevel, flags, clauseSeperator,
+			newLine);
+		metrics.sqlAssembled(cached, System.nanoTime() - start);
+		return sb;
+	}
+	
+	/**
+	 * @return <code>true</code> if the text was taken from the cache
+	 */
+	private boolean assembleCachedSELECT(
+		final SELECT query,
+		final StringBuilder sb,
+		final int indentLevel,
+		final int flags,
+		final String clauseSeperator,
+		final String newLine)
+	{
+		final IngresAssembledSqlCache cache = this.getDbmsAdaptor().getAssembledSqlCache();
+		if(!cache.isEnabled())
+		{
+			this.assembleSELECT0(query, sb, indentLevel, flags, clauseSeperator, newLine);
+			return false;
+		}
+		
+		final String cached = cache.get(query, flags, indentLevel, clauseSeperator, newLine);
+		if(cached != null)
+		{
+			sb.append(cached);
+			return true;
+		}
+		
+		final int start = sb.length();
+		this.assembleSELECT0(query, sb, indentLevel, flags, clauseSeperator, newLine);
+		cache.put(query, flags, indentLevel, clauseSeperator, newLine, sb.substring(start));
+		return false;
+	}
+	
+	private StringBuilder assembleSELECT0(
+		final SELECT query,
+		final StringBuilder sb,
+		final int indentLevel,
+		final int flags,
+		final String clauseSeperator,
+		final String newLine)
 	{
 		indent(sb, indentLevel, isSingleLine(flags)).append(query.keyword());
 		this.assembleSelectDISTINCT(query, sb, indentLevel, flags);
@@ -212,10 +265,124 @@ public class IngresDMLAssembler extends StandardDMLAssembler<IngresDbms>
 		return sb;
 	}
 	
+	/**
+	 * Assembles a page of <code>query</code> for keyset pagination. Instead of skipping an offset, the page is
+	 * restricted to the rows after the last key of the previous page:
+	 *
+	 * <pre>
+	 * SELECT * FROM (query) "page"
+	 * WHERE "k1" &gt;= ? AND (("k1" &gt; ?) OR ("k1" = ? AND "k2" &gt; ?))
+	 * ORDER BY "k1", "k2" FETCH FIRST n ROWS ONLY
+	 * </pre>
+	 *
+	 * The row comparison <code>(k1, k2) &gt; (?, ?)</code> is expanded because Ingres does not support row value
+	 * constructors in predicates. The leading range on the first key column, <code>&lt;=</code> if it is
+	 * descending, lets the optimizer seek through an index on it, which the disjunction alone does not. The values
+	 * of the placeholders are provided by {@link IngresPageCursor#getSeekParameters()}; they follow the placeholders
+	 * of <code>query</code>.
+	 *
+	 * @param query  the query without ORDER BY and row limit, selecting all key columns
+	 * @param cursor the page to assemble
+	 * @param sb     the target
+	 * @return <code>sb</code>
+	 */
+	public StringBuilder assembleKeysetPage(final String query, final IngresPageCursor cursor, final StringBuilder sb)
+	{
+		final char delimiter = this.getDbmsAdaptor().getIdentifierDelimiter();
+		final String[] keyColumns = cursor.getKeyColumns();
+		
+		sb.append("SELECT * FROM (").append(query).append(") ")
+			.append(delimiter).append("page").append(delimiter);
+		
+		if(!cursor.isFirstPage())
+		{
+			sb.append(" WHERE ").append(delimiter).append(keyColumns[0]).append(delimiter)
+				.append(cursor.isDescending(0) ? " <= ?" : " >= ?")
+				.append(" AND (");
+			for(int i = 0; i < keyColumns.length; i++)
+			{
+				if(i > 0)
+				{
+					sb.append(" OR ");
+				}
+				sb.append('(');
+				for(int k = 0; k < i; k++)
+				{
+					sb.append(delimiter).append(keyColumns[k]).append(delimiter).append(" = ? AND ");
+				}
+				sb.append(delimiter).append(keyColumns[i]).append(delimiter)
+					.append(cursor.isDescending(i) ? " < ?" : " > ?")
+					.append(')');
+			}
+			sb.append(')');
+		}
+		
+		sb.append(" ORDER BY ");
+		for(int i = 0; i < keyColumns.length; i++)
+		{
+			if(i > 0)
+			{
+				sb.append(", ");
+			}
+			sb.append(delimiter).append(keyColumns[i]).append(delimiter);
+			if(cursor.isDescending(i))
+			{
+				sb.append(" DESC");
+			}
+		}
+		
+		return sb.append(" FETCH FIRST ").append(cursor.getPageSize()).append(" ROWS ONLY");
+	}
+	
 	@Override
 	protected StringBuilder assembleINSERT(
 		final INSERT query, final StringBuilder sb, final int flags,
 		final String clauseSeperator, final String newLine, final int indentLevel)
+	{
+		final IngresMetricsListener metrics = this.getDbmsAdaptor().getMetricsListener();
+		if(!metrics.isEnabled())
+		{
+			this.assembleCachedINSERT(query, sb, flags, clauseSeperator, newLine, indentLevel);
+			return sb;
+		}
+		
+		final long start = System.nanoTime();
+		final boolean cached = this.assembleCachedINSERT(query, sb, flags, clauseSeperator, newLine,
+			indentLevel);
+		metrics.sqlAssembled(cached, System.nanoTime() - start);
+		return sb;
+	}
+	
+	/**
+	 * @return <code>true</code> if the text was taken from the cache
+	 */
+	private boolean assembleCachedINSERT(
+		final INSERT query, final StringBuilder sb, final int flags,
+		final String clauseSeperator, final String newLine, final int indentLevel)
+	{
+		final IngresAssembledSqlCache cache = this.getDbmsAdaptor().getAssembledSqlCache();
+		if(!cache.isEnabled())
+		{
+			this.assembleINSERT0(query, sb, flags, clauseSeperator, newLine, indentLevel);
+			return false;
+		}
+		
+		final String cached = cache.get(query, flags, indentLevel, clauseSeperator, newLine);
+		if(cached != null)
+		{
+			sb.append(cached);
+			return true;
+		}
+		
+		final int start = sb.length();
+		this.assembleINSERT0(query, sb, flags, clauseSeperator, newLine, indentLevel);
+		cache.put(query, flags, indentLevel, clauseSeperator, newLine, sb.substring(start));
+		return false;
+	}
+	
+	private StringBuilder assembleINSERT0(
+		final INSERT query, final StringBuilder sb, final int flags,
+		final String clauseSeperator, final String newLine, final int indentLevel)
 	{
 		indent(sb, indentLevel, isSingleLine(flags)).append(query.keyword()).append(_INTO_);
 		
@@ -247,4 +414,45 @@ public class IngresDMLAssembler extends StandardDMLAssembler<IngresDbms>
 		
 		return sb;
 	}
+	
+	/**
+	 * Assembles a parameterized single row INSERT which is executed repeatedly as a JDBC batch.
+	 *
+	 * @param schema      the schema of the table, may be <code>null</code>
+	 * @param tableName   the name of the table
+	 * @param columnNames the columns to insert, one <code>?</code> placeholder each
+	 * @param sb          the target
+	 * @return <code>sb</code>
+	 */
+	public StringBuilder assembleBatchINSERT(
+		final String schema, final String tableName,
+		final String[] columnNames, final StringBuilder sb)
+	{
+		final char delimiter = this.getDbmsAdaptor().getIdentifierDelimiter();
+		
+		sb.append("INSERT INTO ");
+		if(schema != null)
+		{
+			sb.append(delimiter).append(schema).append(delimiter).append(dot);
+		}
+		sb.append(delimiter).append(tableName).append(delimiter).append(" (");
+		for(int i = 0; i < columnNames.length; i++)
+		{
+			if(i > 0)
+			{
+				sb.append(',');
+			}
+			sb.append(delimiter).append(columnNames[i]).append(delimiter);
+		}
+		sb.append(") VALUES (");
+		for(int i = 0; i < columnNames.length; i++)
+		{
+			if(i > 0)
+			{
+				sb.append(',');
+			}
+			sb.append('?');
+		}
+		return sb.append(')');
+	}
 }
@@ -19,6 +19,7 @@ package xdev.db.ingres.jdbc;
 
 import com.xdev.jadoth.sqlengine.dbms.DbmsAdaptor;
 import com.xdev.jadoth.sqlengine.dbms.SQLExceptionParser;
+import com.xdev.jadoth.sqlengine.exceptions.SQLEngineException;
 import com.xdev.jadoth.sqlengine.interfaces.ConnectionProvider;
 import com.xdev.jadoth.sqlengine.internal.DatabaseGateway;
 import com.xdev.jadoth.sqlengine.internal.tables.SqlTableIdentity;
@@ -40,10 +41,42 @@ public class IngresDbms
 	
 	protected static final char IDENTIFIER_DELIMITER = '"';
 	
+	/**
+	 * Bytes fitting into an Ingres hex literal, which is limited to 32000 digits. A sensible value for
+	 * {@link #setMaxInlineBinaryLength(int)}.
+	 */
+	protected static final int MAX_INLINE_BINARY_LENGTH = 16000;
+	
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final IngresAssembledSqlCache assembledSqlCache = new IngresAssembledSqlCache(0);
+	
+	private volatile IngresMetricsListener metricsListener = IngresMetricsListener.NOOP;
+	
+	private volatile DatabaseGateway<IngresDbms> databaseGateway;
+	
+	private volatile int maxInlineBinaryLength = Integer.MAX_VALUE;
+	
 	// /////////////////////////////////////////////////////////////////////////
 	// static methods //
 	// /////////////////
 	
+	/**
+	 * Appends two upper case hex digits per byte.
+	 */
+	static StringBuilder appendHex(final byte[] bytes, final StringBuilder sb)
+	{
+		for(final byte b : bytes)
+		{
+			sb.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+		}
+		return sb;
+	}
+	
 	public IngresDbms()
 	{
 		this(new IngresExceptionParser());
@@ -96,21 +129,39 @@ public class IngresDbms
 	}
 	
 	/**
+	 * Refreshes the optimizer statistics of all columns of <code>table</code> with <code>CREATE STATISTICS</code>.
+	 *
+	 * @return the executed statement
+	 * @throws SQLEngineException if the DBMS has not been {@link #initialize(DatabaseGateway) initialized} yet,
+	 *                            earlier versions returned <code>null</code> without doing anything
 	 * @see DbmsAdaptor#updateSelectivity(SqlTableIdentity)
+	 * @see IngresMaintenance#updateStatistics(SqlTableIdentity, int, String...)
 	 */
 	@Override
-	public Object updateSelectivity(final SqlTableIdentity table)
+	public Object updateSelectivity(final SqlTableIdentity table) throws SQLEngineException
 	{
-		return null;
+		return this.getMaintenance().updateStatistics(table, 0);
 	}
 	
 	/**
+	 * Appends <code>bytes</code> as hex literal <code>X'..'</code> without intermediate objects.
+	 *
+	 * @throws SQLEngineException if <code>bytes</code> is longer than a limit set by
+	 *                            {@link #setMaxInlineBinaryLength(int)}, such values have to be passed as statement
+	 *                            parameters
 	 * @see DbmsAdaptor#assembleTransformBytes(byte[], StringBuilder)
 	 */
 	@Override
 	public StringBuilder assembleTransformBytes(final byte[] bytes, final StringBuilder sb)
 	{
-		return sb;
+		if(bytes.length > this.maxInlineBinaryLength)
+		{
+			throw new SQLEngineException("Binary value of " + bytes.length + " bytes exceeds the inline limit of "
+				+ this.maxInlineBinaryLength + " bytes, pass it as statement parameter");
+		}
+		
+		sb.ensureCapacity(sb.length() + 3 + 2 * bytes.length);
+		return appendHex(bytes, sb.append('X').append('\'')).append('\'');
 	}
 	
 	/**
@@ -119,15 +170,23 @@ public class IngresDbms
 	@Override
 	public void initialize(final DatabaseGateway<IngresDbms> dbc)
 	{
+		this.databaseGateway = dbc;
+		this.getRetrospectionAccessor().clearCache();
 	}
 	
 	/**
+	 * Rebuilds the table and its secondary indices with <code>MODIFY ... TO RECONSTRUCT</code>.
+	 *
+	 * @return the number of rebuilt tables and indices
+	 * @throws SQLEngineException if the DBMS has not been {@link #initialize(DatabaseGateway) initialized} yet,
+	 *                            earlier versions returned <code>null</code> without doing anything
 	 * @see DbmsAdaptor#rebuildAllIndices(String)
+	 * @see IngresMaintenance#rebuildIndices(xdev.util.ProgressMonitor, int, String...)
 	 */
 	@Override
-	public Object rebuildAllIndices(final String fullQualifiedTableName)
+	public Object rebuildAllIndices(final String fullQualifiedTableName) throws SQLEngineException
 	{
-		return null;
+		return this.getMaintenance().rebuildIndices(null, 1, fullQualifiedTableName);
 	}
 	
 	/**
@@ -144,4 +203,68 @@ public class IngresDbms
 	{
 		return IDENTIFIER_DELIMITER;
 	}
+	
+	/**
+	 * Cache of assembled SELECT and INSERT statements, disabled until a capacity is set.
+	 *
+	 * @see IngresAssembledSqlCache#setCapacity(int)
+	 */
+	public IngresAssembledSqlCache getAssembledSqlCache()
+	{
+		return this.assembledSqlCache;
+	}
+	
+	/**
+	 * @return the length in bytes up to which binary values are inlined into assembled SQL, unlimited by default
+	 */
+	public int getMaxInlineBinaryLength()
+	{
+		return this.maxInlineBinaryLength;
+	}
+	
+	/**
+	 * Lets longer binary values fail the assembly instead of producing a literal the server may reject, e.g.
+	 * {@link #MAX_INLINE_BINARY_LENGTH}.
+	 */
+	public void setMaxInlineBinaryLength(final int maxInlineBinaryLength)
+	{
+		this.maxInlineBinaryLength = Math.max(0, maxInlineBinaryLength);
+	}
+	
+	/**
+	 * @return the gateway passed to {@link #initialize(DatabaseGateway)}, <code>null</code> before
+	 */
+	public DatabaseGateway<IngresDbms> getDatabaseGateway()
+	{
+		return this.databaseGateway;
+	}
+	
+	/**
+	 * @return maintenance operations on connections of the {@link #getDatabaseGateway() database gateway}
+	 * @throws SQLEngineException if the DBMS has not been initialized yet
+	 */
+	public IngresMaintenance getMaintenance() throws SQLEngineException
+	{
+		final DatabaseGateway<IngresDbms> gateway = this.databaseGateway;
+		if(gateway == null)
+		{
+			throw new SQLEngineException("Ingres DBMS has not been initialized with a database gateway");
+		}
+		return new IngresMaintenance(gateway.getConnectionProvider());
+	}
+	
+	public IngresMetricsListener getMetricsListener()
+	{
+		return this.metricsListener;
+	}
+	
+	/**
+	 * Sets the listener receiving timings of connections, statements, catalog queries and SQL assembly,
+	 * <code>null</code> restores {@link IngresMetricsListener#NOOP}. Connections opened while the listener was
+	 * disabled stay unmeasured.
+	 */
+	public void setMetricsListener(final IngresMetricsListener metricsListener)
+	{
+		this.metricsListener = metricsListener != null ? metricsListener : IngresMetricsListener.NOOP;
+	}
 }
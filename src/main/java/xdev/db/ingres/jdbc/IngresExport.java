@@ -0,0 +1,415 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import xdev.db.DBException;
+
+
+/**
+ * Streams tables or query results into delimited text.
+ * <p>
+ * A reader thread fetches rows with a large fetch size and hands them over in chunks through a bounded queue to the
+ * writing thread, so reading from the server and formatting overlap while memory stays limited to
+ * {@link #setBufferedChunks(int) a few chunks}. Binary columns are written as hex digits.
+ * <p>
+ * The Ingres JDBC driver cannot run <code>COPY TABLE ... INTO</code>, which writes files on the server; this class
+ * is the client-side equivalent.
+ */
+public class IngresExport
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// constants //
+	// ///////////////////
+	
+	/**
+	 * Rows per chunk handed from the reader to the writer.
+	 */
+	protected static final int CHUNK_SIZE = 1000;
+	
+	protected static final int DEFAULT_FETCH_SIZE = 10000;
+	
+	protected static final int DEFAULT_BUFFERED_CHUNKS = 16;
+	
+	private static final long OFFER_TIMEOUT_MILLIS = 100;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final IngresJDBCDataSource dataSource;
+	private final IngresCsvFormat format;
+	
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+	private int bufferedChunks = DEFAULT_BUFFERED_CHUNKS;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////////
+	
+	public IngresExport(final IngresJDBCDataSource dataSource, final IngresCsvFormat format)
+	{
+		this.dataSource = dataSource;
+		this.format = format;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// static methods //
+	// ///////////////////
+	
+	private static boolean isBinary(final int sqlType)
+	{
+		switch(sqlType)
+		{
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				return true;
+			default:
+				return false;
+		}
+	}
+	
+	/**
+	 * Waits for space in <code>queue</code> until the writer gives up.
+	 *
+	 * @return <code>false</code> if the writer has aborted
+	 */
+	private static boolean offer(final BlockingQueue<Chunk> queue, final Chunk chunk, final AtomicBoolean aborted)
+	{
+		try
+		{
+			while(!queue.offer(chunk, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+			{
+				if(aborted.get())
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+		catch(final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// getters //
+	// ///////////////////
+	
+	public int getFetchSize()
+	{
+		return this.fetchSize;
+	}
+	
+	public int getBufferedChunks()
+	{
+		return this.bufferedChunks;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// setters //
+	// ///////////////////
+	
+	/**
+	 * Rows requested from the server per round trip.
+	 */
+	public void setFetchSize(final int fetchSize)
+	{
+		this.fetchSize = Math.max(1, fetchSize);
+	}
+	
+	/**
+	 * Chunks of {@link #CHUNK_SIZE} rows the reader may get ahead of the writer.
+	 */
+	public void setBufferedChunks(final int bufferedChunks)
+	{
+		this.bufferedChunks = Math.max(1, bufferedChunks);
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	/**
+	 * Writes all rows of a table to <code>target</code>. The writer is flushed but not closed.
+	 *
+	 * @param schema the schema of the table, may be <code>null</code>
+	 * @return the number of exported rows
+	 */
+	public long exportTable(final String schema, final String tableName, final Writer target) throws DBException
+	{
+		return this.exportQuery(this.createSelect(schema, tableName), target);
+	}
+	
+	/**
+	 * Writes the result of <code>select</code> to <code>target</code>. The writer is flushed but not closed.
+	 *
+	 * @return the number of exported rows
+	 */
+	public long exportQuery(final String select, final Writer target) throws DBException
+	{
+		final ExecutorService reader = Executors.newSingleThreadExecutor();
+		try
+		{
+			return this.export(select, target, reader);
+		}
+		finally
+		{
+			reader.shutdown();
+		}
+	}
+	
+	/**
+	 * Exports every table into a file <code>&lt;table&gt;.csv</code> in <code>directory</code>, up to
+	 * <code>parallelism</code> tables at the same time, each on its own connection.
+	 *
+	 * @return the number of exported rows per table
+	 */
+	public Map<String, Long> exportTables(
+		final String schema, final Collection<String> tableNames,
+		final Path directory, final Charset charset, final int parallelism) throws DBException
+	{
+		final int threads = Math.max(1, Math.min(parallelism, tableNames.size()));
+		final ExecutorService writers = Executors.newFixedThreadPool(threads);
+		final ExecutorService readers = Executors.newFixedThreadPool(threads);
+		try
+		{
+			final Map<String, Future<Long>> futures = new LinkedHashMap<>();
+			for(final String tableName : tableNames)
+			{
+				final Path file = directory.resolve(tableName.trim() + ".csv");
+				final String select = this.createSelect(schema, tableName);
+				futures.put(tableName, writers.submit(() -> {
+					try(final Writer target = Files.newBufferedWriter(file, charset))
+					{
+						return this.export(select, target, readers);
+					}
+				}));
+			}
+			
+			final Map<String, Long> rowCounts = new LinkedHashMap<>();
+			for(final Map.Entry<String, Future<Long>> entry : futures.entrySet())
+			{
+				rowCounts.put(entry.getKey(), entry.getValue().get());
+			}
+			return rowCounts;
+		}
+		catch(final ExecutionException e)
+		{
+			final Throwable cause = e.getCause();
+			throw cause instanceof DBException ? (DBException)cause : new DBException(this.dataSource, cause);
+		}
+		catch(final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new DBException(this.dataSource, e);
+		}
+		finally
+		{
+			writers.shutdownNow();
+			readers.shutdown();
+		}
+	}
+	
+	private String createSelect(final String schema, final String tableName)
+	{
+		final char delimiter = this.dataSource.getDbmsAdaptor().getIdentifierDelimiter();
+		final StringBuilder sb = new StringBuilder("SELECT * FROM ");
+		if(schema != null)
+		{
+			sb.append(delimiter).append(schema).append(delimiter).append('.');
+		}
+		return sb.append(delimiter).append(tableName).append(delimiter).toString();
+	}
+	
+	private long export(final String select, final Writer target, final ExecutorService readers)
+		throws DBException
+	{
+		final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(this.bufferedChunks);
+		final AtomicBoolean aborted = new AtomicBoolean();
+		final Future<?> reader = readers.submit(() -> this.read(select, queue, aborted));
+		
+		final StringBuilder sb = new StringBuilder(256);
+		long rowCount = 0;
+		try
+		{
+			for(;;)
+			{
+				final Chunk chunk = queue.take();
+				if(chunk.failure != null)
+				{
+					throw chunk.failure;
+				}
+				if(chunk.header != null)
+				{
+					if(this.format.hasHeader())
+					{
+						sb.setLength(0);
+						target.append(this.format.appendRecord(chunk.header, sb));
+					}
+					continue;
+				}
+				if(chunk.rows == null)
+				{
+					break;
+				}
+				for(final String[] row : chunk.rows)
+				{
+					sb.setLength(0);
+					target.append(this.format.appendRecord(row, sb));
+				}
+				rowCount += chunk.rows.size();
+			}
+			target.flush();
+			reader.get();
+			return rowCount;
+		}
+		catch(final DBException e)
+		{
+			throw e;
+		}
+		catch(final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new DBException(this.dataSource, e);
+		}
+		catch(final Throwable t)
+		{
+			throw new DBException(this.dataSource, t);
+		}
+		finally
+		{
+			aborted.set(true);
+		}
+	}
+	
+	private void read(final String select, final BlockingQueue<Chunk> queue, final AtomicBoolean aborted)
+	{
+		try(final Connection connection = this.dataSource.getConnectionProvider().getConnection();
+			final Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY))
+		{
+			statement.setFetchSize(this.fetchSize);
+			try(final ResultSet resultSet = statement.executeQuery(select))
+			{
+				final ResultSetMetaData metaData = resultSet.getMetaData();
+				final int columnCount = metaData.getColumnCount();
+				final String[] header = new String[columnCount];
+				final boolean[] binary = new boolean[columnCount];
+				for(int i = 0; i < columnCount; i++)
+				{
+					header[i] = metaData.getColumnName(i + 1);
+					binary[i] = isBinary(metaData.getColumnType(i + 1));
+				}
+				if(!offer(queue, new Chunk(header, null, null), aborted))
+				{
+					return;
+				}
+				
+				final StringBuilder hex = new StringBuilder();
+				List<String[]> rows = new ArrayList<>(CHUNK_SIZE);
+				while(resultSet.next())
+				{
+					final String[] row = new String[columnCount];
+					for(int i = 0; i < columnCount; i++)
+					{
+						if(binary[i])
+						{
+							final byte[] bytes = resultSet.getBytes(i + 1);
+							if(bytes != null)
+							{
+								hex.setLength(0);
+								row[i] = IngresDbms.appendHex(bytes, hex).toString();
+							}
+						}
+						else
+						{
+							row[i] = resultSet.getString(i + 1);
+						}
+					}
+					rows.add(row);
+					
+					if(rows.size() == CHUNK_SIZE)
+					{
+						if(!offer(queue, new Chunk(null, rows, null), aborted))
+						{
+							return;
+						}
+						rows = new ArrayList<>(CHUNK_SIZE);
+					}
+				}
+				if(!rows.isEmpty() && !offer(queue, new Chunk(null, rows, null), aborted))
+				{
+					return;
+				}
+			}
+			offer(queue, new Chunk(null, null, null), aborted);
+		}
+		catch(final Throwable t)
+		{
+			offer(queue, new Chunk(null, null, new DBException(this.dataSource, t)), aborted);
+		}
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// member types //
+	// ///////////////////
+	
+	/**
+	 * Unit handed from reader to writer: the header, a block of rows, the end (all <code>null</code>) or a failure.
+	 */
+	private static final class Chunk
+	{
+		final String[] header;
+		final List<String[]> rows;
+		final Exception failure;
+		
+		Chunk(final String[] header, final List<String[]> rows, final Exception failure)
+		{
+			this.header = header;
+			this.rows = rows;
+			this.failure = failure;
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+
+/**
+ * Fetch size applied to the queries of an {@link IngresJDBCDataSource}.
+ * <p>
+ * A fixed number of rows is set on statements before they are executed. Otherwise, if a buffer size is given, the
+ * number of rows per fetch is derived from the estimated row width of each result, so narrow results are fetched in
+ * large blocks and wide ones in small blocks. Prepared queries describe their result before execution and get the
+ * adaptive size up front; other statements get it on the result set, where it applies from the second block on.
+ * A per-query override is available through {@link IngresJDBCConnection#query(int, String, Object...)}.
+ */
+public class IngresFetchSize
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// constants //
+	// ///////////////////
+	
+	/**
+	 * Leaves the fetch size to the driver.
+	 */
+	public static final IngresFetchSize DRIVER_DEFAULT = new IngresFetchSize(0, 0);
+	
+	/**
+	 * Upper bound of the adaptive fetch size.
+	 */
+	protected static final int MAX_ADAPTIVE_ROWS = 10000;
+	
+	/**
+	 * Bounds of the width assumed per column in bytes. Long types report huge display sizes but are transferred
+	 * in segments, so they are capped.
+	 */
+	protected static final int MIN_COLUMN_WIDTH = 4;
+	protected static final int MAX_COLUMN_WIDTH = 4096;
+	
+	private static final ThreadLocal<Integer> OVERRIDE = new ThreadLocal<>();
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final int rows;
+	private final int bufferSize;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////////
+	
+	/**
+	 * @param rows       fixed rows per fetch, 0 for none
+	 * @param bufferSize bytes per fetch the adaptive fetch size aims at, 0 disables it
+	 */
+	public IngresFetchSize(final int rows, final int bufferSize)
+	{
+		this.rows = Math.max(0, rows);
+		this.bufferSize = Math.max(0, bufferSize);
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// static methods //
+	// ///////////////////
+	
+	/**
+	 * Sets the fetch size for queries of the current thread.
+	 *
+	 * @param rows the fetch size, 0 removes the override
+	 * @return the previous override, 0 if there was none
+	 */
+	static int setOverride(final int rows)
+	{
+		final Integer previous = OVERRIDE.get();
+		if(rows > 0)
+		{
+			OVERRIDE.set(rows);
+		}
+		else
+		{
+			OVERRIDE.remove();
+		}
+		return previous != null ? previous : 0;
+	}
+	
+	/**
+	 * @return the fetch size override of the current thread, 0 if there is none
+	 */
+	static int getOverride()
+	{
+		final Integer override = OVERRIDE.get();
+		return override != null ? override : 0;
+	}
+	
+	/**
+	 * @return the estimated width of a row of <code>metaData</code> in bytes
+	 */
+	static long estimateRowWidth(final ResultSetMetaData metaData) throws SQLException
+	{
+		long width = 0;
+		final int columnCount = metaData.getColumnCount();
+		for(int i = 1; i <= columnCount; i++)
+		{
+			width += Math.min(MAX_COLUMN_WIDTH, Math.max(MIN_COLUMN_WIDTH, metaData.getColumnDisplaySize(i)));
+		}
+		return Math.max(1, width);
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// getters //
+	// ///////////////////
+	
+	public int getRows()
+	{
+		return this.rows;
+	}
+	
+	public int getBufferSize()
+	{
+		return this.bufferSize;
+	}
+	
+	/**
+	 * @return <code>true</code> if statements have to be intercepted, <code>false</code> for the driver default
+	 */
+	public boolean isEnabled()
+	{
+		return this.rows > 0 || this.bufferSize > 0;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	/**
+	 * @return the fetch size to set before a query is executed, 0 to leave it
+	 */
+	int getStatementFetchSize()
+	{
+		final Integer override = OVERRIDE.get();
+		return override != null ? override : this.rows;
+	}
+	
+	/**
+	 * @param metaData the described result, may be <code>null</code>
+	 * @return the adaptive fetch size for rows of <code>metaData</code>, 0 if there is none
+	 */
+	int getAdaptiveFetchSize(final ResultSetMetaData metaData) throws SQLException
+	{
+		if(this.bufferSize == 0 || metaData == null)
+		{
+			return 0;
+		}
+		final long rowWidth = estimateRowWidth(metaData);
+		return (int)Math.max(1, Math.min(MAX_ADAPTIVE_ROWS, this.bufferSize / rowWidth));
+	}
+	
+	/**
+	 * Sets the adaptive fetch size on <code>resultSet</code>, which takes effect from the next block of rows on.
+	 */
+	void adapt(final ResultSet resultSet) throws SQLException
+	{
+		final int rows = this.getAdaptiveFetchSize(resultSet.getMetaData());
+		if(rows > 0)
+		{
+			resultSet.setFetchSize(rows);
+		}
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "rows=" + this.rows + ", bufferSize=" + this.bufferSize;
+	}
+}
@@ -0,0 +1,329 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * {@link IngresMetricsListener} which keeps in-memory histograms of all measurements.
+ * <p>
+ * Histograms use power-of-two buckets, so recording is a handful of atomic increments and percentiles are accurate
+ * to a factor of two. Durations are reported in milliseconds.
+ */
+public class IngresHistogramMetrics implements IngresMetricsListener
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final Histogram connectionOpen = new Histogram();
+	private final Histogram connectionClose = new Histogram();
+	private final Histogram statementExecution = new Histogram();
+	private final LongAdder statementFailures = new LongAdder();
+	private final Histogram parameterBinding = new Histogram();
+	private final Histogram lobLength = new Histogram();
+	private final Histogram catalogQuery = new Histogram();
+	private final Histogram sqlAssembly = new Histogram();
+	private final LongAdder sqlAssemblyCacheHits = new LongAdder();
+	private final Histogram statementPrepare = new Histogram();
+	private final LongAdder statementCacheHits = new LongAdder();
+	private final LongAdder statementCacheEvictions = new LongAdder();
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// override methods //
+	// ///////////////////
+	
+	@Override
+	public void connectionOpened(final long nanos)
+	{
+		this.connectionOpen.record(nanos);
+	}
+	
+	@Override
+	public void connectionClosed(final long nanos)
+	{
+		this.connectionClose.record(nanos);
+	}
+	
+	@Override
+	public void statementExecuted(final String sql, final long nanos, final boolean failed)
+	{
+		this.statementExecution.record(nanos);
+		if(failed)
+		{
+			this.statementFailures.increment();
+		}
+	}
+	
+	@Override
+	public void parameterBound(final long lobLength, final long nanos)
+	{
+		this.parameterBinding.record(nanos);
+		if(lobLength >= 0)
+		{
+			this.lobLength.record(lobLength);
+		}
+	}
+	
+	@Override
+	public void catalogQueryExecuted(final String sql, final long nanos)
+	{
+		this.catalogQuery.record(nanos);
+	}
+	
+	@Override
+	public void sqlAssembled(final boolean cached, final long nanos)
+	{
+		this.sqlAssembly.record(nanos);
+		if(cached)
+		{
+			this.sqlAssemblyCacheHits.increment();
+		}
+	}
+	
+	@Override
+	public void statementPrepared(final boolean cached, final long nanos)
+	{
+		this.statementPrepare.record(nanos);
+		if(cached)
+		{
+			this.statementCacheHits.increment();
+		}
+	}
+	
+	@Override
+	public void statementEvicted()
+	{
+		this.statementCacheEvictions.increment();
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// getters //
+	// ///////////////////
+	
+	public Histogram getConnectionOpen()
+	{
+		return this.connectionOpen;
+	}
+	
+	public Histogram getConnectionClose()
+	{
+		return this.connectionClose;
+	}
+	
+	public Histogram getStatementExecution()
+	{
+		return this.statementExecution;
+	}
+	
+	public long getStatementFailures()
+	{
+		return this.statementFailures.sum();
+	}
+	
+	public Histogram getParameterBinding()
+	{
+		return this.parameterBinding;
+	}
+	
+	/**
+	 * @return sizes of bound LOBs in bytes or characters, not durations
+	 */
+	public Histogram getLobLength()
+	{
+		return this.lobLength;
+	}
+	
+	public Histogram getCatalogQuery()
+	{
+		return this.catalogQuery;
+	}
+	
+	public Histogram getSqlAssembly()
+	{
+		return this.sqlAssembly;
+	}
+	
+	public long getSqlAssemblyCacheHits()
+	{
+		return this.sqlAssemblyCacheHits.sum();
+	}
+	
+	public Histogram getStatementPrepare()
+	{
+		return this.statementPrepare;
+	}
+	
+	public long getStatementCacheHits()
+	{
+		return this.statementCacheHits.sum();
+	}
+	
+	public long getStatementCacheEvictions()
+	{
+		return this.statementCacheEvictions.sum();
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	public void reset()
+	{
+		this.connectionOpen.reset();
+		this.connectionClose.reset();
+		this.statementExecution.reset();
+		this.statementFailures.reset();
+		this.parameterBinding.reset();
+		this.lobLength.reset();
+		this.catalogQuery.reset();
+		this.sqlAssembly.reset();
+		this.sqlAssemblyCacheHits.reset();
+		this.statementPrepare.reset();
+		this.statementCacheHits.reset();
+		this.statementCacheEvictions.reset();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "connectionOpen[" + this.connectionOpen.toMillisString() + "]"
+			+ ", connectionClose[" + this.connectionClose.toMillisString() + "]"
+			+ ", statementExecution[" + this.statementExecution.toMillisString() + ", failures="
+			+ this.getStatementFailures() + "]"
+			+ ", parameterBinding[" + this.parameterBinding.toMillisString() + "]"
+			+ ", lobLength[" + this.lobLength + "]"
+			+ ", catalogQuery[" + this.catalogQuery.toMillisString() + "]"
+			+ ", sqlAssembly[" + this.sqlAssembly.toMillisString() + ", cacheHits="
+			+ this.getSqlAssemblyCacheHits() + "]"
+			+ ", statementPrepare[" + this.statementPrepare.toMillisString() + ", cacheHits="
+			+ this.getStatementCacheHits() + ", evictions=" + this.getStatementCacheEvictions() + "]";
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// member types //
+	// ///////////////////
+	
+	/**
+	 * Lock-free histogram of non-negative values. Bucket <code>i</code> counts values below <code>2^i</code>.
+	 */
+	public static class Histogram
+	{
+		private static final int BUCKETS = 64;
+		
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+		
+		public void record(final long value)
+		{
+			final long v = Math.max(0, value);
+			this.buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(v)));
+			this.count.increment();
+			this.sum.add(v);
+			
+			long current;
+			while(v > (current = this.max.get()) && !this.max.compareAndSet(current, v))
+			{
+				// retry
+			}
+		}
+		
+		public long getCount()
+		{
+			return this.count.sum();
+		}
+		
+		public long getSum()
+		{
+			return this.sum.sum();
+		}
+		
+		public long getMax()
+		{
+			return this.max.get();
+		}
+		
+		public double getMean()
+		{
+			final long count = this.getCount();
+			return count == 0 ? 0 : (double)this.getSum() / count;
+		}
+		
+		/**
+		 * @param percentile between 0 and 100
+		 * @return the upper bound of the bucket holding the percentile, capped at {@link #getMax()}
+		 */
+		public long getPercentile(final double percentile)
+		{
+			long total = 0;
+			final long[] counts = new long[BUCKETS];
+			for(int i = 0; i < BUCKETS; i++)
+			{
+				counts[i] = this.buckets.get(i);
+				total += counts[i];
+			}
+			if(total == 0)
+			{
+				return 0;
+			}
+			
+			final long rank = (long)Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+			long seen = 0;
+			for(int i = 0; i < BUCKETS; i++)
+			{
+				seen += counts[i];
+				if(seen >= rank && counts[i] > 0)
+				{
+					final long upperBound = i == 0 ? 0 : i >= 63 ? Long.MAX_VALUE : (1L << i) - 1;
+					return Math.min(upperBound, this.getMax());
+				}
+			}
+			return this.getMax();
+		}
+		
+		public void reset()
+		{
+			for(int i = 0; i < BUCKETS; i++)
+			{
+				this.buckets.set(i, 0);
+			}
+			this.count.reset();
+			this.sum.reset();
+			this.max.set(0);
+		}
+		
+		String toMillisString()
+		{
+			return String.format("count=%d, mean=%.3fms, p50=%.3fms, p99=%.3fms, max=%.3fms", this.getCount(),
+				this.getMean() / 1e6, this.getPercentile(50) / 1e6, this.getPercentile(99) / 1e6,
+				this.getMax() / 1e6);
+		}
+		
+		@Override
+		public String toString()
+		{
+			return String.format("count=%d, mean=%.1f, p50=%d, p99=%d, max=%d", this.getCount(), this.getMean(),
+				this.getPercentile(50), this.getPercentile(99), this.getMax());
+		}
+	}
+}
@@ -0,0 +1,442 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import xdev.db.DBException;
+
+
+/**
+ * Loads delimited text into a table without holding it in memory.
+ * <p>
+ * The input is parsed on the calling thread and handed in chunks of {@link #setBatchSize(int) batch size} rows to
+ * loader threads, each inserting through its own connection with a prepared statement executed as JDBC batch and a
+ * commit every {@link #setCommitInterval(int) commit interval} rows. With a parallelism above 1 the rows are spread
+ * over several connections and their order in the table is not preserved.
+ * <p>
+ * Values are converted by the driver to the type of the target column. Binary columns expect hex digits, as written
+ * by {@link IngresExport}. If loading fails, chunks already committed stay in the table.
+ * <p>
+ * The Ingres JDBC driver cannot run <code>COPY TABLE ... FROM</code>, which reads files on the server; batched
+ * inserts are the client-side equivalent.
+ */
+public class IngresImport
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// constants //
+	// ///////////////////
+	
+	protected static final int DEFAULT_COMMIT_INTERVAL = 10000;
+	
+	private static final long OFFER_TIMEOUT_MILLIS = 100;
+	
+	private static final List<String[]> END = Collections.emptyList();
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final IngresJDBCDataSource dataSource;
+	private final IngresCsvFormat format;
+	
+	private int batchSize;
+	private int commitInterval = DEFAULT_COMMIT_INTERVAL;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////////
+	
+	public IngresImport(final IngresJDBCDataSource dataSource, final IngresCsvFormat format)
+	{
+		this.dataSource = dataSource;
+		this.format = format;
+		this.batchSize = Math.max(1, dataSource.getIntParameter(IngresJDBCDataSource.INSERT_BATCH_SIZE));
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// static methods //
+	// ///////////////////
+	
+	private static byte[] parseHex(final String value)
+	{
+		if(value.length() % 2 != 0)
+		{
+			throw new IllegalArgumentException("Odd number of hex digits: " + value);
+		}
+		final byte[] bytes = new byte[value.length() / 2];
+		for(int i = 0; i < bytes.length; i++)
+		{
+			final int high = Character.digit(value.charAt(2 * i), 16);
+			final int low = Character.digit(value.charAt(2 * i + 1), 16);
+			if(high < 0 || low < 0)
+			{
+				throw new IllegalArgumentException("Invalid hex digits: " + value);
+			}
+			bytes[i] = (byte)(high << 4 | low);
+		}
+		return bytes;
+	}
+	
+	private static boolean isBinary(final int sqlType)
+	{
+		switch(sqlType)
+		{
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				return true;
+			default:
+				return false;
+		}
+	}
+	
+	/**
+	 * Waits for space in <code>queue</code> until a loader fails.
+	 *
+	 * @return <code>false</code> if loading has been aborted
+	 */
+	private static boolean offer(
+		final BlockingQueue<List<String[]>> queue, final List<String[]> chunk,
+		final AtomicBoolean aborted) throws InterruptedException
+	{
+		while(!queue.offer(chunk, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+		{
+			if(aborted.get())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Waits for the next chunk until loading is aborted.
+	 *
+	 * @return <code>null</code> if loading has been aborted
+	 */
+	private static List<String[]> poll(final BlockingQueue<List<String[]>> queue, final AtomicBoolean aborted)
+		throws InterruptedException
+	{
+		for(;;)
+		{
+			final List<String[]> chunk = queue.poll(OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+			if(chunk != null)
+			{
+				return chunk;
+			}
+			if(aborted.get())
+			{
+				return null;
+			}
+		}
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// getters //
+	// ///////////////////
+	
+	public int getBatchSize()
+	{
+		return this.batchSize;
+	}
+	
+	public int getCommitInterval()
+	{
+		return this.commitInterval;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// setters //
+	// ///////////////////
+	
+	/**
+	 * Rows per JDBC batch, defaults to {@link IngresJDBCDataSource#INSERT_BATCH_SIZE}.
+	 */
+	public void setBatchSize(final int batchSize)
+	{
+		this.batchSize = Math.max(1, batchSize);
+	}
+	
+	/**
+	 * Rows after which each loader commits; rounded up to whole batches.
+	 */
+	public void setCommitInterval(final int commitInterval)
+	{
+		this.commitInterval = Math.max(1, commitInterval);
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	/**
+	 * Inserts all records of <code>source</code> into a table. The reader is not closed.
+	 *
+	 * @param schema      the schema of the table, may be <code>null</code>
+	 * @param columnNames the target column of each field, <code>null</code> takes them from the header record
+	 * @param parallelism number of connections loading concurrently
+	 * @return the number of inserted rows
+	 */
+	public long importTable(
+		final String schema, final String tableName, final String[] columnNames,
+		final Reader source, final int parallelism) throws DBException
+	{
+		final IngresCsvFormat.Parser parser = this.format.parse(source);
+		try
+		{
+			String[] columns = columnNames;
+			if(this.format.hasHeader())
+			{
+				final String[] header = parser.next();
+				if(columns == null)
+				{
+					columns = header;
+				}
+			}
+			if(columns == null || columns.length == 0)
+			{
+				throw new DBException(this.dataSource, "No column names for import into " + tableName);
+			}
+			
+			final IngresDMLAssembler assembler = this.dataSource.getDbmsAdaptor().getDMLAssembler();
+			final String insert = assembler.assembleBatchINSERT(schema, tableName, columns, new StringBuilder(128))
+				.toString();
+			final int[] types = this.loadColumnTypes(schema, tableName, columns);
+			
+			return this.load(parser, insert, types, Math.max(1, parallelism));
+		}
+		catch(final IOException e)
+		{
+			throw new DBException(this.dataSource, "Import into " + tableName + " failed in line "
+				+ parser.getLineNumber(), e);
+		}
+	}
+	
+	/**
+	 * @return the JDBC types of the target columns, read from an empty result
+	 */
+	private int[] loadColumnTypes(final String schema, final String tableName, final String[] columnNames)
+		throws DBException
+	{
+		final char delimiter = this.dataSource.getDbmsAdaptor().getIdentifierDelimiter();
+		final StringBuilder sb = new StringBuilder("SELECT ");
+		for(int i = 0; i < columnNames.length; i++)
+		{
+			if(i > 0)
+			{
+				sb.append(',');
+			}
+			sb.append(delimiter).append(columnNames[i]).append(delimiter);
+		}
+		sb.append(" FROM ");
+		if(schema != null)
+		{
+			sb.append(delimiter).append(schema).append(delimiter).append('.');
+		}
+		final String probe = sb.append(delimiter).append(tableName).append(delimiter).append(" WHERE 1=0")
+			.toString();
+		
+		try(final Connection connection = this.dataSource.getConnectionProvider().getConnection();
+			final Statement statement = connection.createStatement())
+		{
+			final ResultSetMetaData metaData = statement.executeQuery(probe).getMetaData();
+			final int[] types = new int[metaData.getColumnCount()];
+			for(int i = 0; i < types.length; i++)
+			{
+				types[i] = metaData.getColumnType(i + 1);
+			}
+			return types;
+		}
+		catch(final SQLException e)
+		{
+			throw new DBException(this.dataSource, e);
+		}
+	}
+	
+	private long load(
+		final IngresCsvFormat.Parser parser, final String insert,
+		final int[] types, final int parallelism) throws IOException, DBException
+	{
+		final BlockingQueue<List<String[]>> queue = new ArrayBlockingQueue<>(2 * parallelism);
+		final AtomicBoolean aborted = new AtomicBoolean();
+		final ExecutorService loaders = Executors.newFixedThreadPool(parallelism);
+		try
+		{
+			final List<Future<Long>> futures = new ArrayList<>(parallelism);
+			for(int i = 0; i < parallelism; i++)
+			{
+				futures.add(loaders.submit(() -> {
+					try
+					{
+						return this.insert(queue, aborted, insert, types);
+					}
+					catch(final Exception e)
+					{
+						aborted.set(true);
+						throw e;
+					}
+				}));
+			}
+			
+			boolean complete = true;
+			List<String[]> chunk = new ArrayList<>(this.batchSize);
+			for(String[] record; (record = parser.next()) != null;)
+			{
+				if(record.length != types.length)
+				{
+					throw new IOException("Expected " + types.length + " fields but found " + record.length);
+				}
+				chunk.add(record);
+				if(chunk.size() == this.batchSize)
+				{
+					if(!offer(queue, chunk, aborted))
+					{
+						complete = false;
+						break;
+					}
+					chunk = new ArrayList<>(this.batchSize);
+				}
+			}
+			if(complete && !chunk.isEmpty())
+			{
+				offer(queue, chunk, aborted);
+			}
+			for(int i = 0; i < parallelism; i++)
+			{
+				offer(queue, END, aborted);
+			}
+			
+			long rowCount = 0;
+			for(final Future<Long> future : futures)
+			{
+				rowCount += future.get();
+			}
+			return rowCount;
+		}
+		catch(final ExecutionException e)
+		{
+			final Throwable cause = e.getCause();
+			throw cause instanceof DBException ? (DBException)cause : new DBException(this.dataSource, cause);
+		}
+		catch(final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new DBException(this.dataSource, e);
+		}
+		finally
+		{
+			aborted.set(true);
+			loaders.shutdown();
+		}
+	}
+	
+	/**
+	 * Loader: inserts chunks from <code>queue</code> until the end marker arrives. If loading is aborted the
+	 * uncommitted rows are rolled back.
+	 *
+	 * @return the number of committed rows
+	 */
+	private long insert(
+		final BlockingQueue<List<String[]>> queue, final AtomicBoolean aborted,
+		final String insert, final int[] types) throws DBException, InterruptedException
+	{
+		try(final Connection connection = this.dataSource.getConnectionProvider().getConnection())
+		{
+			final boolean autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			try(final PreparedStatement statement = connection.prepareStatement(insert))
+			{
+				long inserted = 0;
+				long uncommitted = 0;
+				for(List<String[]> chunk; (chunk = poll(queue, aborted)) != END;)
+				{
+					if(chunk == null)
+					{
+						connection.rollback();
+						return inserted - uncommitted;
+					}
+					
+					for(final String[] record : chunk)
+					{
+						for(int i = 0; i < types.length; i++)
+						{
+							final String value = record[i];
+							if(value == null)
+							{
+								statement.setNull(i + 1, types[i]);
+							}
+							else if(isBinary(types[i]))
+							{
+								statement.setBytes(i + 1, parseHex(value));
+							}
+							else
+							{
+								statement.setObject(i + 1, value, types[i]);
+							}
+						}
+						statement.addBatch();
+					}
+					statement.executeBatch();
+					
+					inserted += chunk.size();
+					uncommitted += chunk.size();
+					if(uncommitted >= this.commitInterval)
+					{
+						connection.commit();
+						uncommitted = 0;
+					}
+				}
+				connection.commit();
+				return inserted;
+			}
+			catch(final SQLException | RuntimeException e)
+			{
+				connection.rollback();
+				throw e;
+			}
+			finally
+			{
+				connection.setAutoCommit(autoCommit);
+			}
+		}
+		catch(final SQLException | IllegalArgumentException e)
+		{
+			throw new DBException(this.dataSource, e);
+		}
+	}
+}
@@ -0,0 +1,427 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Proxy of a physical connection which reports statement executions and the closing of the connection to the
+ * {@link IngresMetricsListener} of an {@link IngresDbms} and applies an {@link IngresFetchSize} to queries.
+ * Statements created through the connection are wrapped as well.
+ * <p>
+ * With a statement cache, closing a statement prepared by {@link Connection#prepareStatement(String)} keeps it
+ * open as idle statement of its SQL text, so preparing the same text again skips the round trip to the server. The
+ * least recently closed statements are evicted when the cache is full; all idle statements are closed with the
+ * connection.
+ * <p>
+ * The listener is looked up on every call, so replacing it takes effect for open connections, too.
+ */
+final class IngresInstrumentedConnection implements InvocationHandler
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final Connection physical;
+	private final IngresDbms dbms;
+	private final IngresFetchSize fetchSize;
+	private final int statementCacheSize;
+	
+	// guarded by itself, in eviction order
+	private final Map<String, PreparedStatement> idleStatements = new LinkedHashMap<>();
+	private boolean closed;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////////
+	
+	private IngresInstrumentedConnection(
+		final Connection physical, final IngresDbms dbms,
+		final IngresFetchSize fetchSize, final int statementCacheSize)
+	{
+		this.physical = physical;
+		this.dbms = dbms;
+		this.fetchSize = fetchSize;
+		this.statementCacheSize = statementCacheSize;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// static methods //
+	// ///////////////////
+	
+	/**
+	 * @param statementCacheSize idle prepared statements kept per connection, 0 disables the cache
+	 */
+	static Connection wrap(
+		final Connection physical, final IngresDbms dbms,
+		final IngresFetchSize fetchSize, final int statementCacheSize)
+	{
+		return (Connection)Proxy.newProxyInstance(
+			IngresInstrumentedConnection.class.getClassLoader(),
+			new Class<?>[]{Connection.class},
+			new IngresInstrumentedConnection(physical, dbms, fetchSize, statementCacheSize));
+	}
+	
+	private static Object forward(final Object target, final Method method, final Object[] args) throws Throwable
+	{
+		try
+		{
+			return method.invoke(target, args);
+		}
+		catch(final InvocationTargetException e)
+		{
+			throw e.getCause();
+		}
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// override methods //
+	// ///////////////////
+	
+	@Override
+	public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable
+	{
+		switch(method.getName())
+		{
+			case "close":
+				this.close();
+				return null;
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "Instrumented[" + this.physical + "]";
+			case "prepareStatement":
+				if(this.statementCacheSize > 0 && args.length == 1)
+				{
+					return this.prepareCached((Connection)proxy, (String)args[0]);
+				}
+				break;
+			default:
+		}
+		
+		final Object result = forward(this.physical, method, args);
+		if(result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType()))
+		{
+			// prepareStatement and prepareCall pass the SQL text first
+			final String sql = args != null && args.length > 0 && args[0] instanceof String
+				? (String)args[0]
+				: null;
+			return Proxy.newProxyInstance(
+				IngresInstrumentedConnection.class.getClassLoader(),
+				new Class<?>[]{method.getReturnType()},
+				new InstrumentedStatement((Statement)result, (Connection)proxy, sql, false));
+		}
+		return result;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	/**
+	 * Hands out an idle statement of <code>sql</code> or prepares a new one which is returned to the cache when it
+	 * is closed.
+	 */
+	private PreparedStatement prepareCached(final Connection proxy, final String sql) throws SQLException
+	{
+		final IngresMetricsListener metrics = this.dbms.getMetricsListener();
+		final long start = metrics.isEnabled() ? System.nanoTime() : 0;
+		
+		PreparedStatement statement;
+		synchronized(this.idleStatements)
+		{
+			statement = this.idleStatements.remove(sql);
+		}
+		final boolean cached = statement != null;
+		if(!cached)
+		{
+			statement = this.physical.prepareStatement(sql);
+		}
+		
+		if(metrics.isEnabled())
+		{
+			metrics.statementPrepared(cached, System.nanoTime() - start);
+		}
+		return (PreparedStatement)Proxy.newProxyInstance(
+			IngresInstrumentedConnection.class.getClassLoader(),
+			new Class<?>[]{PreparedStatement.class},
+			new InstrumentedStatement(statement, proxy, sql, true));
+	}
+	
+	/**
+	 * Resets a closed statement of the cache and keeps it as idle statement, evicting the least recently closed
+	 * one if the cache is full.
+	 */
+	private void release(final String sql, final PreparedStatement statement, final ResultSet resultSet)
+	{
+		try
+		{
+			if(resultSet != null)
+			{
+				resultSet.close();
+			}
+			statement.clearParameters();
+			statement.clearBatch();
+			statement.clearWarnings();
+			statement.setFetchSize(0);
+			statement.setMaxRows(0);
+			statement.setQueryTimeout(0);
+		}
+		catch(final SQLException e)
+		{
+			closeQuietly(statement);
+			return;
+		}
+		
+		final List<PreparedStatement> evicted = new ArrayList<>(2);
+		synchronized(this.idleStatements)
+		{
+			if(this.closed)
+			{
+				evicted.add(statement);
+			}
+			else
+			{
+				final PreparedStatement replaced = this.idleStatements.put(sql, statement);
+				if(replaced != null)
+				{
+					// the same text was prepared twice
+					evicted.add(replaced);
+				}
+				final Iterator<PreparedStatement> eldest = this.idleStatements.values().iterator();
+				while(this.idleStatements.size() > this.statementCacheSize)
+				{
+					evicted.add(eldest.next());
+					eldest.remove();
+				}
+			}
+		}
+		
+		final IngresMetricsListener metrics = this.dbms.getMetricsListener();
+		for(final PreparedStatement idle : evicted)
+		{
+			closeQuietly(idle);
+			if(idle != statement)
+			{
+				metrics.statementEvicted();
+			}
+		}
+	}
+	
+	private static void closeQuietly(final Statement statement)
+	{
+		try
+		{
+			statement.close();
+		}
+		catch(final SQLException e)
+		{
+			// the statement is dropped anyway
+		}
+	}
+	
+	private void close() throws Throwable
+	{
+		final List<PreparedStatement> idle;
+		synchronized(this.idleStatements)
+		{
+			this.closed = true;
+			idle = new ArrayList<>(this.idleStatements.values());
+			this.idleStatements.clear();
+		}
+		for(final PreparedStatement statement : idle)
+		{
+			closeQuietly(statement);
+		}
+		
+		final IngresMetricsListener metrics = this.dbms.getMetricsListener();
+		if(!metrics.isEnabled() || this.physical.isClosed())
+		{
+			this.physical.close();
+			return;
+		}
+		
+		final long start = System.nanoTime();
+		this.physical.close();
+		metrics.connectionClosed(System.nanoTime() - start);
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// member types //
+	// ///////////////////
+	
+	private final class InstrumentedStatement implements InvocationHandler
+	{
+		private final Statement statement;
+		private final Connection connection;
+		private final String sql;
+		private final boolean cached;
+		
+		// state of a cached statement, which outlives this handler
+		private boolean closed;
+		private ResultSet resultSet;
+		
+		InstrumentedStatement(
+			final Statement statement, final Connection connection,
+			final String sql, final boolean cached)
+		{
+			this.statement = statement;
+			this.connection = connection;
+			this.sql = sql;
+			this.cached = cached;
+		}
+		
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable
+		{
+			final String name = method.getName();
+			switch(name)
+			{
+				case "getConnection":
+					return this.connection;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Instrumented[" + this.statement + "]";
+				default:
+			}
+			
+			if(this.cached)
+			{
+				switch(name)
+				{
+					case "close":
+						if(!this.closed)
+						{
+							this.closed = true;
+							IngresInstrumentedConnection.this.release(this.sql, (PreparedStatement)this.statement,
+								this.resultSet);
+						}
+						return null;
+					case "isClosed":
+						return this.closed || this.statement.isClosed();
+					default:
+						if(this.closed)
+						{
+							throw new SQLException("Statement is closed");
+						}
+				}
+			}
+			
+			if("getResultSet".equals(name))
+			{
+				return this.adaptFetchSize(forward(this.statement, method, args));
+			}
+			if(!name.startsWith("execute"))
+			{
+				return forward(this.statement, method, args);
+			}
+			
+			if(("executeQuery".equals(name) || "execute".equals(name)) && this.statement.getFetchSize() == 0)
+			{
+				final IngresFetchSize fetchSize = IngresInstrumentedConnection.this.fetchSize;
+				int rows = fetchSize.getStatementFetchSize();
+				// execute may run DML, which has no result description to ask the server for; its result sets are
+				// adapted by adaptFetchSize
+				if(rows == 0 && "executeQuery".equals(name) && this.statement instanceof PreparedStatement)
+				{
+					rows = fetchSize.getAdaptiveFetchSize(this.describe());
+				}
+				if(rows > 0)
+				{
+					this.statement.setFetchSize(rows);
+				}
+			}
+			
+			final IngresMetricsListener metrics = IngresInstrumentedConnection.this.dbms.getMetricsListener();
+			if(!metrics.isEnabled())
+			{
+				return this.adaptFetchSize(forward(this.statement, method, args));
+			}
+			
+			// Statement.execute* pass the SQL text, PreparedStatement.execute* use the prepared one
+			final String sql = args != null && args.length > 0 && args[0] instanceof String
+				? (String)args[0]
+				: this.sql;
+			final long start = System.nanoTime();
+			boolean failed = true;
+			try
+			{
+				final Object result = forward(this.statement, method, args);
+				failed = false;
+				return this.adaptFetchSize(result);
+			}
+			finally
+			{
+				metrics.statementExecuted(sql, System.nanoTime() - start, failed);
+			}
+		}
+		
+		/**
+		 * @return the result description of the prepared statement, <code>null</code> if the driver has none
+		 */
+		private ResultSetMetaData describe()
+		{
+			try
+			{
+				return ((PreparedStatement)this.statement).getMetaData();
+			}
+			catch(final SQLException e)
+			{
+				// fall back to the result set
+				return null;
+			}
+		}
+		
+		/**
+		 * Applies the adaptive fetch size to results of statements without an explicit fetch size.
+		 */
+		private Object adaptFetchSize(final Object result) throws Throwable
+		{
+			if(result instanceof ResultSet)
+			{
+				// closed when a cached statement is released
+				this.resultSet = (ResultSet)result;
+				if(this.statement.getFetchSize() == 0)
+				{
+					IngresInstrumentedConnection.this.fetchSize.adapt(this.resultSet);
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -17,6 +17,7 @@
  */
 package xdev.db.ingres.jdbc;
 
+import java.io.Reader;
 import java.sql.Blob;
 import java.sql.Clob;
 import java.sql.Connection;
@@ -24,14 +25,29 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import xdev.db.DBException;
+import xdev.db.Result;
 import xdev.db.jdbc.JDBCConnection;
 
 
 public class IngresJDBCConnection extends JDBCConnection<IngresJDBCDataSource, IngresDbms>
 {
+	/**
+	 * Table names checked per catalog query by {@link #createTables(Collection)}.
+	 */
+	private static final int TABLE_EXISTS_BATCH_SIZE = 100;
+	
 	public IngresJDBCConnection(final IngresJDBCDataSource dataSource)
 	{
 		super(dataSource);
@@ -42,21 +58,264 @@ public class IngresJDBCConnection extends JDBCConnection<IngresJDBCDataSource, I
 		final PreparedStatement statement, final Object parameter,
 		final int jdbcIndex) throws SQLException, DBException
 	{
-		final boolean inTransaction = this.isInTransaction();
-		if(!inTransaction && parameter instanceof Blob)
+		final IngresMetricsListener metrics = this.getDataSource().getMetricsListener();
+		if(!metrics.isEnabled())
+		{
+			this.bindParameter(statement, parameter, jdbcIndex, false);
+			return;
+		}
+		
+		final long start = System.nanoTime();
+		final long lobLength = this.bindParameter(statement, parameter, jdbcIndex, true);
+		metrics.parameterBound(lobLength, System.nanoTime() - start);
+	}
+	
+	/**
+	 * @param measureLob whether the length of LOBs bound within a transaction has to be determined
+	 * @return the length of a bound blob or clob, -1 for other parameters or if it was not determined
+	 */
+	private long bindParameter(
+		final PreparedStatement statement, final Object parameter,
+		final int jdbcIndex, final boolean measureLob) throws SQLException, DBException
+	{
+		if(this.isInTransaction())
+		{
+			super.setPreparedStatementParameter(statement, parameter, jdbcIndex);
+			if(measureLob && parameter instanceof Blob)
+			{
+				return ((Blob)parameter).length();
+			}
+			if(measureLob && parameter instanceof Clob)
+			{
+				return ((Clob)parameter).length();
+			}
+			return -1;
+		}
+		
+		if(parameter instanceof Blob)
 		{
 			final Blob blob = (Blob)parameter;
-			statement.setBytes(jdbcIndex, blob.getBytes(1, (int)blob.length()));
+			final long length = blob.length();
+			if(length > this.getLobStreamingThreshold())
+			{
+				statement.setBinaryStream(jdbcIndex, blob.getBinaryStream(), length);
+			}
+			else
+			{
+				statement.setBytes(jdbcIndex, blob.getBytes(1, (int)length));
+			}
+			return length;
 		}
-		else if(!inTransaction && parameter instanceof Clob)
+		if(parameter instanceof Clob)
 		{
 			final Clob clob = (Clob)parameter;
-			statement.setString(jdbcIndex, clob.getSubString(1, (int)clob.length()));
+			final long length = clob.length();
+			if(length > this.getLobStreamingThreshold())
+			{
+				statement.setCharacterStream(jdbcIndex, clob.getCharacterStream(), length);
+			}
+			else
+			{
+				statement.setString(jdbcIndex, clob.getSubString(1, (int)length));
+			}
+			return length;
 		}
-		else
+		super.setPreparedStatementParameter(statement, parameter, jdbcIndex);
+		return -1;
+	}
+	
+	/**
+	 * Sets the auto-commit mode of the underlying connection. Ingres keeps only one cursor open per session in
+	 * auto-commit mode, so readers which interleave several results switch it off while they read.
+	 *
+	 * @return the previous mode
+	 */
+	boolean setAutoCommit(final boolean autoCommit) throws DBException
+	{
+		try
 		{
-			super.setPreparedStatementParameter(statement, parameter, jdbcIndex);
+			final Connection connection = this.getConnection();
+			final boolean previous = connection.getAutoCommit();
+			if(previous != autoCommit)
+			{
+				connection.setAutoCommit(autoCommit);
+			}
+			return previous;
+		}
+		catch(final SQLException e)
+		{
+			throw new DBException(this.getDataSource(), e);
+		}
+	}
+	
+	/**
+	 * Size above which LOBs are streamed. The threshold is an int, so LOBs too large for an array are always
+	 * streamed.
+	 */
+	private long getLobStreamingThreshold()
+	{
+		return Math.max(0, this.getDataSource().getIntParameter(IngresJDBCDataSource.LOB_STREAMING_THRESHOLD));
+	}
+	
+	/**
+	 * Wraps the connection for a query with a fetch size override if the data source does not intercept its
+	 * connections anyway.
+	 */
+	@Override
+	public Connection getConnection() throws DBException
+	{
+		final Connection connection = super.getConnection();
+		if(IngresFetchSize.getOverride() > 0 && !this.getDataSource().isInterceptingConnections())
+		{
+			return IngresInstrumentedConnection.wrap(connection, this.getDataSource().getDbmsAdaptor(),
+				IngresFetchSize.DRIVER_DEFAULT, 0);
+		}
+		return connection;
+	}
+	
+	/**
+	 * Executes a query which fetches <code>fetchSize</code> rows per round trip, regardless of
+	 * {@link IngresJDBCDataSource#FETCH_SIZE} and {@link IngresJDBCDataSource#FETCH_BUFFER_SIZE}.
+	 *
+	 * @param fetchSize rows per fetch, 0 for the configured fetch size
+	 * @see #query(String, Object...)
+	 */
+	public Result query(final int fetchSize, final String sql, final Object... params) throws DBException
+	{
+		final int previous = IngresFetchSize.setOverride(fetchSize);
+		try
+		{
+			return this.query(sql, params);
+		}
+		finally
+		{
+			IngresFetchSize.setOverride(previous);
+		}
+	}
+	
+	/**
+	 * Reads one page of <code>query</code> by key instead of by offset, so deep pages cost as much as the first
+	 * one. The next page is requested with the cursor returned by {@link IngresPageCursor#next(Object...)} for
+	 * the key of the last row read.
+	 *
+	 * @param query  the query without ORDER BY and row limit
+	 * @param params the parameters of <code>query</code>
+	 * @see IngresDMLAssembler#assembleKeysetPage(String, IngresPageCursor, StringBuilder)
+	 */
+	public Result queryPage(final IngresPageCursor cursor, final String query, final Object... params)
+		throws DBException
+	{
+		final String sql = this.getDataSource().getDbmsAdaptor().getDMLAssembler()
+			.assembleKeysetPage(query, cursor, new StringBuilder(query.length() + 128))
+			.toString();
+		
+		final Object[] seekParameters = cursor.getSeekParameters();
+		final Object[] allParams = Arrays.copyOf(params, params.length + seekParameters.length);
+		System.arraycopy(seekParameters, 0, allParams, params.length, seekParameters.length);
+		return this.query(sql, allParams);
+	}
+	
+	/**
+	 * Inserts all <code>rows</code> with a prepared statement executed as JDBC batches of
+	 * {@link IngresJDBCDataSource#INSERT_BATCH_SIZE} rows.
+	 *
+	 * @see #insertBatch(String, String, String[], Iterable, int)
+	 */
+	public long insertBatch(
+		final String schema, final String tableName, final String[] columnNames,
+		final Iterable<Object[]> rows) throws DBException
+	{
+		return this.insertBatch(schema, tableName, columnNames, rows,
+			this.getDataSource().getIntParameter(IngresJDBCDataSource.INSERT_BATCH_SIZE));
+	}
+	
+	/**
+	 * Inserts all <code>rows</code> with one prepared statement, sending them to the server in chunks of
+	 * <code>batchSize</code> rows. Each row holds the values in the order of <code>columnNames</code>.
+	 * <p>
+	 * Outside of a transaction every chunk is committed by the driver on its own.
+	 *
+	 * @return the number of inserted rows
+	 */
+	public long insertBatch(
+		final String schema, final String tableName, final String[] columnNames,
+		final Iterable<Object[]> rows, final int batchSize) throws DBException
+	{
+		final String sql = this.getDataSource().getDbmsAdaptor().getDMLAssembler()
+			.assembleBatchINSERT(schema, tableName, columnNames, new StringBuilder(64))
+			.toString();
+		
+		if(log.isDebugEnabled())
+		{
+			log.debug("SQL Statement for batch insert: " + sql); //$NON-NLS-1$
+		}
+		
+		final Connection connection = this.getConnection();
+		try
+		{
+			try(final PreparedStatement statement = connection.prepareStatement(sql))
+			{
+				final int chunkSize = Math.max(1, batchSize);
+				long inserted = 0;
+				int pending = 0;
+				for(final Object[] row : rows)
+				{
+					for(int i = 0; i < columnNames.length; i++)
+					{
+						this.setPreparedStatementParameter(statement, row[i], i + 1);
+					}
+					statement.addBatch();
+					
+					if(++pending == chunkSize)
+					{
+						inserted += countBatch(statement.executeBatch());
+						pending = 0;
+					}
+				}
+				if(pending > 0)
+				{
+					inserted += countBatch(statement.executeBatch());
+				}
+				return inserted;
+			}
+			finally
+			{
+				if(!this.isInTransaction())
+				{
+					connection.close();
+				}
+			}
+		}
+		catch(final SQLException e)
+		{
+			throw new DBException(this.getDataSource(), e);
+		}
+	}
+	
+	/**
+	 * Loads delimited text into a table on connections of their own, committing every
+	 * {@link IngresImport#DEFAULT_COMMIT_INTERVAL} rows. This is independent of the transaction of this
+	 * connection.
+	 *
+	 * @see IngresImport#importTable(String, String, String[], Reader, int)
+	 */
+	public long importDelimited(
+		final String schema, final String tableName, final String[] columnNames,
+		final Reader source, final IngresCsvFormat format, final int parallelism) throws DBException
+	{
+		return this.getDataSource().createImport(format).importTable(schema, tableName, columnNames, source,
+			parallelism);
+	}
+	
+	private static long countBatch(final int[] updateCounts)
+	{
+		long count = 0;
+		for(final int updateCount : updateCounts)
+		{
+			// the driver may not report counts per row
+			count += updateCount == Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, updateCount);
 		}
+		return count;
 	}
 	
 	@Override
@@ -64,95 +323,250 @@ public class IngresJDBCConnection extends JDBCConnection<IngresJDBCDataSource, I
 		final String tableName, final String primaryKey, final Map<String, String> columnMap,
 		final boolean isAutoIncrement, final Map<String, String> foreignKeys) throws Exception
 	{
-		final Connection connection = super.getConnection();
-		final Statement statement = connection.createStatement();
+		this.createTables(Collections.singletonList(
+			new TableDefinition(tableName, primaryKey, columnMap, isAutoIncrement)));
+	}
+	
+	/**
+	 * Creates those of <code>tables</code> which do not exist yet. The existence of all tables is checked with
+	 * one catalog query per 100 names, skipping the tables known to the
+	 * {@link IngresTableExistenceCache}. The tables are created in one transaction; within a transaction of this
+	 * connection they become part of it. A table defined more than once is created once; differing definitions of
+	 * the same table are rejected. The created tables are invalidated in the {@link IngresMetaDataCache}.
+	 *
+	 * @return the number of created tables
+	 */
+	public int createTables(final Collection<TableDefinition> definitions) throws DBException
+	{
+		final Collection<TableDefinition> tables = this.distinct(definitions);
+		final IngresTableExistenceCache cache = this.getDataSource().getTableExistenceCache();
+		final Connection connection = this.getConnection();
 		try
 		{
-			if(!this.checkIfTableExists(connection.createStatement(), tableName))
+			try
 			{
+				final Set<String> existing = this.getExistingTables(connection, tables, cache);
 				
-				if(!columnMap.containsKey(primaryKey))
+				final List<TableDefinition> missing = new ArrayList<>();
+				for(final TableDefinition table : tables)
 				{
-					columnMap.put(primaryKey, "INTEGER"); //$NON-NLS-1$
+					if(!existing.contains(table.tableName))
+					{
+						missing.add(table);
+					}
+				}
+				if(missing.isEmpty())
+				{
+					return 0;
 				}
-				StringBuffer createStatement = null;
 				
-				if(isAutoIncrement)
+				final boolean ownTransaction = !this.isInTransaction();
+				final boolean autoCommit = connection.getAutoCommit();
+				if(ownTransaction && autoCommit)
 				{
-					createStatement = new StringBuffer(
-						"CREATE TABLE \"" + tableName + "\"(\"" //$NON-NLS-1$ //$NON-NLS-2$
-							+ primaryKey
-							+ "\" " + columnMap.get(primaryKey)
-							+ " GENERATED BY DEFAULT AS IDENTITY (START WITH 201 INCREMENT BY 1) NOT NULL,"); //$NON
-					// -NLS-1$ //$NON-NLS-2$
+					connection.setAutoCommit(false);
 				}
-				else
+				try(final Statement statement = connection.createStatement())
 				{
-					createStatement = new StringBuffer("CREATE TABLE " + tableName + "(" //$NON-NLS-1$ //$NON-NLS-2$
-						+ primaryKey + " " + columnMap.get(primaryKey) + ","); //$NON-NLS-1$ //$NON-NLS-2$
+					for(final TableDefinition table : missing)
+					{
+						final String sql = table.toCreateStatement();
+						if(log.isDebugEnabled())
+						{
+							log.debug("SQL Statement to create a table: " + sql); //$NON-NLS-1$
+						}
+						statement.execute(sql);
+					}
+					
+					// the catalog stamps have a resolution of one second
+					final IngresMetaDataCache metaDataCache = this.getDataSource().getMetaDataCache();
+					if(metaDataCache != null)
+					{
+						for(final TableDefinition table : missing)
+						{
+							metaDataCache.invalidate(table.tableName);
+						}
+					}
+					
+					if(ownTransaction)
+					{
+						connection.commit();
+						if(cache != null)
+						{
+							for(final TableDefinition table : missing)
+							{
+								cache.add(table.tableName);
+							}
+						}
+					}
 				}
-				
-				for(final String keySet : columnMap.keySet())
+				catch(final SQLException e)
 				{
-					if(!keySet.equals(primaryKey))
+					if(ownTransaction)
 					{
-						createStatement.append(
-							"\"" + keySet + "\" " + columnMap.get(keySet) + ","); //$NON-NLS-1$ //$NON-NLS-2$
+						connection.rollback();
 					}
+					throw e;
 				}
-				
-				createStatement.append(" PRIMARY KEY (\"" + primaryKey + "\"))"); //$NON-NLS-1$ //$NON-NLS-2$
-				
-				if(log.isDebugEnabled())
+				finally
+				{
+					if(ownTransaction && autoCommit)
+					{
+						connection.setAutoCommit(true);
+					}
+				}
+				return missing.size();
+			}
+			finally
+			{
+				if(!this.isInTransaction())
 				{
-					log.debug("SQL Statement to create a table: " + createStatement); //$NON-NLS-1$
+					connection.close();
 				}
-				statement.execute(createStatement.toString());
 			}
 		}
-		catch(final Exception e)
+		catch(final SQLException e)
 		{
-			throw e;
+			throw new DBException(this.getDataSource(), e);
 		}
-		finally
+	}
+	
+	/**
+	 * @return the first definition of each table name
+	 * @throws DBException if a table is defined twice with different columns or keys
+	 */
+	private Collection<TableDefinition> distinct(final Collection<TableDefinition> tables) throws DBException
+	{
+		final Map<String, TableDefinition> distinct = new LinkedHashMap<>();
+		for(final TableDefinition table : tables)
 		{
-			statement.close();
-			connection.close();
+			final TableDefinition previous = distinct.putIfAbsent(table.tableName, table);
+			if(previous != null && !previous.toCreateStatement().equals(table.toCreateStatement()))
+			{
+				throw new DBException(this.getDataSource(), "Conflicting definitions of table " + table.tableName);
+			}
 		}
+		return distinct.size() == tables.size() ? tables : distinct.values();
 	}
 	
-	private boolean checkIfTableExists(final Statement statement, final String tableName) throws Exception
+	/**
+	 * @return the names of <code>tables</code> which exist in <code>iitables</code>
+	 */
+	private Set<String> getExistingTables(
+		final Connection connection, final Collection<TableDefinition> tables,
+		final IngresTableExistenceCache cache) throws SQLException
 	{
-		
-		final String sql = "select * from iitables where table_name = '" + tableName + "'"; //$NON-NLS-1$ //$NON-NLS-2$
-		
-		ResultSet resultSet = null;
-		try
+		final Set<String> existing = new HashSet<>();
+		final Set<String> unknownNames = new LinkedHashSet<>();
+		for(final TableDefinition table : tables)
 		{
-			statement.execute(sql);
-			resultSet = statement.getResultSet();
+			if(cache != null && cache.exists(table.tableName))
+			{
+				existing.add(table.tableName);
+			}
+			else
+			{
+				unknownNames.add(table.tableName);
+			}
 		}
-		catch(final Exception e)
+		
+		final List<String> unknown = new ArrayList<>(unknownNames);
+		
+		for(int from = 0; from < unknown.size(); from += TABLE_EXISTS_BATCH_SIZE)
 		{
-			if(resultSet != null)
+			final List<String> batch = unknown.subList(from,
+				Math.min(from + TABLE_EXISTS_BATCH_SIZE, unknown.size()));
+			
+			final StringBuilder sql = new StringBuilder(
+				"select table_name from iitables where table_name in ("); //$NON-NLS-1$
+			for(int i = 0; i < batch.size(); i++)
 			{
-				resultSet.close();
+				sql.append(i == 0 ? "?" : ",?"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			sql.append(")"); //$NON-NLS-1$
+			
+			try(final PreparedStatement statement = connection.prepareStatement(sql.toString()))
+			{
+				for(int i = 0; i < batch.size(); i++)
+				{
+					statement.setString(i + 1, batch.get(i));
+				}
+				try(final ResultSet resultSet = statement.executeQuery())
+				{
+					while(resultSet.next())
+					{
+						final String tableName = resultSet.getString(1).trim();
+						existing.add(tableName);
+						if(cache != null)
+						{
+							cache.add(tableName);
+						}
+					}
+				}
 			}
-			statement.close();
-			throw e;
 		}
 		
-		if(resultSet != null)
+		return existing;
+	}
+	
+	/**
+	 * Table to be created by {@link IngresJDBCConnection#createTables(Collection)}.
+	 */
+	public static final class TableDefinition
+	{
+		final String tableName;
+		final String primaryKey;
+		final Map<String, String> columnMap;
+		final boolean isAutoIncrement;
+		
+		/**
+		 * @param columnMap column name -&gt; type; the primary key defaults to INTEGER
+		 */
+		public TableDefinition(
+			final String tableName, final String primaryKey, final Map<String, String> columnMap,
+			final boolean isAutoIncrement)
 		{
-			if(resultSet.next())
+			this.tableName = tableName;
+			this.primaryKey = primaryKey;
+			this.columnMap = columnMap;
+			this.isAutoIncrement = isAutoIncrement;
+		}
+		
+		String toCreateStatement()
+		{
+			if(!this.columnMap.containsKey(this.primaryKey))
+			{
+				this.columnMap.put(this.primaryKey, "INTEGER"); //$NON-NLS-1$
+			}
+			StringBuffer createStatement = null;
+			
+			if(this.isAutoIncrement)
+			{
+				createStatement = new StringBuffer(
+					"CREATE TABLE \"" + this.tableName + "\"(\"" //$NON-NLS-1$ //$NON-NLS-2$
+						+ this.primaryKey
+						+ "\" " + this.columnMap.get(this.primaryKey)
+						+ " GENERATED BY DEFAULT AS IDENTITY (START WITH 201 INCREMENT BY 1) NOT NULL,"); //$NON
+				// -NLS-1$ //$NON-NLS-2$
+			}
+			else
 			{
-				resultSet.close();
-				statement.close();
-				return true;
+				createStatement = new StringBuffer("CREATE TABLE " + this.tableName + "(" //$NON-NLS-1$ //$NON-NLS-2$
+					+ this.primaryKey + " " + this.columnMap.get(this.primaryKey) + ","); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			
+			for(final String keySet : this.columnMap.keySet())
+			{
+				if(!keySet.equals(this.primaryKey))
+				{
+					createStatement.append(
+						"\"" + keySet + "\" " + this.columnMap.get(keySet) + ","); //$NON-NLS-1$ //$NON-NLS-2$
+				}
 			}
-			resultSet.close();
+			
+			createStatement.append(" PRIMARY KEY (\"" + this.primaryKey + "\"))"); //$NON-NLS-1$ //$NON-NLS-2$
+			
+			return createStatement.toString();
 		}
-		statement.close();
-		return false;
 	}
 }
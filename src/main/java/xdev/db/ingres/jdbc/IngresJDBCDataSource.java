@@ -17,12 +17,109 @@
  */
 package xdev.db.ingres.jdbc;
 
+import com.xdev.jadoth.sqlengine.interfaces.ConnectionProvider;
+
 import xdev.db.DBException;
 import xdev.db.jdbc.JDBCDataSource;
 
 
 public class IngresJDBCDataSource extends JDBCDataSource<IngresJDBCDataSource, IngresDbms>
 {
+	/**
+	 * Enables the built-in connection pool, see {@link IngresConnectionPool}.
+	 */
+	public static final Parameter<Boolean> CONNECTION_POOL = new Parameter<>("connectionPool", false);
+	
+	public static final Parameter<Integer> CONNECTION_POOL_MIN_SIZE = new Parameter<>("connectionPoolMinSize", 0);
+	
+	public static final Parameter<Integer> CONNECTION_POOL_MAX_SIZE = new Parameter<>("connectionPoolMaxSize", 10);
+	
+	/**
+	 * Milliseconds to wait for a free pooled connection, 0 waits forever.
+	 */
+	public static final Parameter<Integer> CONNECTION_POOL_TIMEOUT = new Parameter<>("connectionPoolTimeout", 30000);
+	
+	/**
+	 * Milliseconds after which idle connections above the minimum size are closed, 0 keeps them open.
+	 */
+	public static final Parameter<Integer> CONNECTION_POOL_IDLE_TIMEOUT = new Parameter<>(
+		"connectionPoolIdleTimeout",
+		600000);
+	
+	/**
+	 * Milliseconds after which a pooled connection is retired, 0 keeps it forever.
+	 */
+	public static final Parameter<Integer> CONNECTION_POOL_MAX_LIFETIME = new Parameter<>(
+		"connectionPoolMaxLifetime",
+		1800000);
+	
+	/**
+	 * Query used to check idle connections before reuse, empty uses {@link java.sql.Connection#isValid(int)}.
+	 */
+	public static final Parameter<String> CONNECTION_POOL_VALIDATION_QUERY = new Parameter<>(
+		"connectionPoolValidationQuery",
+		"SELECT 1");
+	
+	/**
+	 * Rows sent to the server per JDBC batch by {@link IngresJDBCConnection#insertBatch(String, String, String[],
+	 * Iterable)}.
+	 */
+	public static final Parameter<Integer> INSERT_BATCH_SIZE = new Parameter<>("insertBatchSize", 1000);
+	
+	/**
+	 * Number of threads building the table metadata, 1 builds sequentially on the calling thread.
+	 */
+	public static final Parameter<Integer> METADATA_PARALLELISM = new Parameter<>("metadataParallelism", 1);
+	
+	/**
+	 * Keeps table infos, table metadata, foreign keys and stored procedures between calls, see
+	 * {@link IngresMetaDataCache}.
+	 */
+	public static final Parameter<Boolean> METADATA_CACHE = new Parameter<>("metadataCache", false);
+	
+	/**
+	 * Remembers the tables known to exist, so creating tables skips the catalog probe for them, see
+	 * {@link IngresTableExistenceCache}.
+	 */
+	public static final Parameter<Boolean> TABLE_EXISTENCE_CACHE = new Parameter<>("tableExistenceCache", false);
+	
+	/**
+	 * Runs the catalog queries for table metadata concurrently, each on its own connection. Pays off with a remote
+	 * server, where the round trips would otherwise add up, preferably together with {@link #CONNECTION_POOL}.
+	 */
+	public static final Parameter<Boolean> METADATA_CONCURRENT_CATALOG = new Parameter<>(
+		"metadataConcurrentCatalog", false);
+	
+	/**
+	 * Blobs and clobs bound outside of a transaction which are larger than this many bytes or characters are
+	 * streamed to the server instead of being read into memory first. 0 streams every LOB.
+	 */
+	public static final Parameter<Integer> LOB_STREAMING_THRESHOLD = new Parameter<>("lobStreamingThreshold",
+		1048576);
+	
+	/**
+	 * Rows fetched per round trip by queries, 0 keeps the driver default. See {@link IngresFetchSize}.
+	 */
+	public static final Parameter<Integer> FETCH_SIZE = new Parameter<>("fetchSize", 0);
+	
+	/**
+	 * Bytes fetched per round trip by queries without a fixed {@link #FETCH_SIZE}; the number of rows is derived
+	 * from the column widths of each result. 0 disables the adaptive fetch size.
+	 */
+	public static final Parameter<Integer> FETCH_BUFFER_SIZE = new Parameter<>("fetchBufferSize", 0);
+	
+	/**
+	 * Prepared statements kept open per physical connection for reuse, 0 disables the cache. The least recently
+	 * used ones are closed when the cache is full.
+	 */
+	public static final Parameter<Integer> STATEMENT_CACHE_SIZE = new Parameter<>("statementCacheSize", 0);
+	
+	private final IngresMetaDataCache metaDataCache = new IngresMetaDataCache();
+	
+	private final IngresTableExistenceCache tableExistenceCache = new IngresTableExistenceCache();
+	
+	private IngresConnectionProvider pooledConnectionProvider;
+	
 	public IngresJDBCDataSource()
 	{
 		super(new IngresDbms());
@@ -40,10 +137,187 @@ public class IngresJDBCDataSource extends JDBCDataSource<IngresJDBCDataSource, I
 			URL_EXTENSION.clone(),
 			IS_SERVER_DATASOURCE.clone(),
 			SERVER_URL.clone(),
-			AUTH_KEY.clone()
+			AUTH_KEY.clone(),
+			CONNECTION_POOL.clone(),
+			CONNECTION_POOL_MIN_SIZE.clone(),
+			CONNECTION_POOL_MAX_SIZE.clone(),
+			CONNECTION_POOL_TIMEOUT.clone(),
+			CONNECTION_POOL_IDLE_TIMEOUT.clone(),
+			CONNECTION_POOL_MAX_LIFETIME.clone(),
+			CONNECTION_POOL_VALIDATION_QUERY.clone(),
+			INSERT_BATCH_SIZE.clone(),
+			METADATA_PARALLELISM.clone(),
+			METADATA_CACHE.clone(),
+			TABLE_EXISTENCE_CACHE.clone(),
+			METADATA_CONCURRENT_CATALOG.clone(),
+			LOB_STREAMING_THRESHOLD.clone(),
+			FETCH_SIZE.clone(),
+			FETCH_BUFFER_SIZE.clone(),
+			STATEMENT_CACHE_SIZE.clone()
 		};
 	}
 	
+	public boolean isConnectionPoolEnabled()
+	{
+		return Boolean.TRUE.equals(this.getParameterValue(CONNECTION_POOL));
+	}
+	
+	/**
+	 * Returns the pooling provider if {@link #CONNECTION_POOL} is set, the default provider otherwise. The pool is
+	 * created with the parameter values present at the first call. Without pooling, an enabled metrics listener,
+	 * fetch size or statement cache gets an unpooled provider which intercepts the connections.
+	 */
+	@Override
+	public ConnectionProvider<IngresDbms> getConnectionProvider()
+	{
+		if(!this.isConnectionPoolEnabled())
+		{
+			return this.isInterceptingConnections()
+				? new IngresConnectionProvider(this.getConnectionInformation(), this.getFetchSize(),
+					this.getStatementCacheSize())
+				: super.getConnectionProvider();
+		}
+		
+		synchronized(this)
+		{
+			if(this.pooledConnectionProvider == null)
+			{
+				this.pooledConnectionProvider = new IngresConnectionProvider(
+					this.getConnectionInformation(),
+					this.getIntParameter(CONNECTION_POOL_MIN_SIZE),
+					this.getIntParameter(CONNECTION_POOL_MAX_SIZE),
+					this.getIntParameter(CONNECTION_POOL_TIMEOUT),
+					this.getIntParameter(CONNECTION_POOL_IDLE_TIMEOUT),
+					this.getIntParameter(CONNECTION_POOL_MAX_LIFETIME),
+					this.getParameterValue(CONNECTION_POOL_VALIDATION_QUERY),
+					this.getFetchSize(),
+					this.getStatementCacheSize()
+				);
+			}
+			return this.pooledConnectionProvider;
+		}
+	}
+	
+	/**
+	 * @return <code>true</code> if connections are wrapped by {@link IngresInstrumentedConnection}, because a
+	 *         metrics listener, fetch size or statement cache is set
+	 */
+	boolean isInterceptingConnections()
+	{
+		return this.getDbmsAdaptor().getMetricsListener().isEnabled() || this.getFetchSize().isEnabled()
+			|| this.getStatementCacheSize() > 0;
+	}
+	
+	/**
+	 * @return the fetch size configured by {@link #FETCH_SIZE} and {@link #FETCH_BUFFER_SIZE}
+	 */
+	public IngresFetchSize getFetchSize()
+	{
+		return new IngresFetchSize(this.getIntParameter(FETCH_SIZE), this.getIntParameter(FETCH_BUFFER_SIZE));
+	}
+	
+	public int getStatementCacheSize()
+	{
+		return Math.max(0, this.getIntParameter(STATEMENT_CACHE_SIZE));
+	}
+	
+	/**
+	 * @return the statistics of the connection pool, or <code>null</code> if no pool has been created
+	 */
+	public synchronized IngresConnectionPool.Statistics getConnectionPoolStatistics()
+	{
+		return this.pooledConnectionProvider != null
+			? this.pooledConnectionProvider.getPool().getStatistics()
+			: null;
+	}
+	
+	/**
+	 * Closes the connection pool. A new pool is created on the next connection request if pooling is still
+	 * enabled.
+	 */
+	public synchronized void closeConnectionPool()
+	{
+		if(this.pooledConnectionProvider != null)
+		{
+			this.pooledConnectionProvider.getPool().close();
+			this.pooledConnectionProvider = null;
+		}
+	}
+	
+	/**
+	 * @return maintenance operations, such as refreshing optimizer statistics, on connections of this data source
+	 */
+	public IngresMaintenance getMaintenance()
+	{
+		return new IngresMaintenance(this.getConnectionProvider());
+	}
+	
+	/**
+	 * @return a streaming export of tables and queries into delimited text
+	 */
+	public IngresExport createExport(final IngresCsvFormat format)
+	{
+		return new IngresExport(this, format);
+	}
+	
+	/**
+	 * @return a streaming import of delimited text into tables
+	 */
+	public IngresImport createImport(final IngresCsvFormat format)
+	{
+		return new IngresImport(this, format);
+	}
+	
+	/**
+	 * @return an executor of asynchronous statements on the default executor, to be closed by the caller
+	 */
+	public IngresAsyncExecutor createAsyncExecutor()
+	{
+		return new IngresAsyncExecutor(this);
+	}
+	
+	/**
+	 * @see IngresDbms#getMetricsListener()
+	 */
+	public IngresMetricsListener getMetricsListener()
+	{
+		return this.getDbmsAdaptor().getMetricsListener();
+	}
+	
+	/**
+	 * @see IngresDbms#setMetricsListener(IngresMetricsListener)
+	 */
+	public void setMetricsListener(final IngresMetricsListener metricsListener)
+	{
+		this.getDbmsAdaptor().setMetricsListener(metricsListener);
+	}
+	
+	/**
+	 * @return the metadata cache, or <code>null</code> if {@link #METADATA_CACHE} is not set
+	 */
+	public IngresMetaDataCache getMetaDataCache()
+	{
+		return Boolean.TRUE.equals(this.getParameterValue(METADATA_CACHE))
+			? this.metaDataCache
+			: null;
+	}
+	
+	/**
+	 * @return the table existence cache, or <code>null</code> if {@link #TABLE_EXISTENCE_CACHE} is not set
+	 */
+	public IngresTableExistenceCache getTableExistenceCache()
+	{
+		return Boolean.TRUE.equals(this.getParameterValue(TABLE_EXISTENCE_CACHE))
+			? this.tableExistenceCache
+			: null;
+	}
+	
+	int getIntParameter(final Parameter<Integer> parameter)
+	{
+		final Integer value = this.getParameterValue(parameter);
+		return value != null ? value : parameter.getValue();
+	}
+	
 	@Override
 	protected IngresConnectionInformation getConnectionInformation()
 	{
@@ -18,14 +18,17 @@
 package xdev.db.ingres.jdbc;
 
 import java.sql.Connection;
-import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLSyntaxErrorException;
-import java.sql.Statement;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -33,6 +36,13 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 
 import com.ingres.gcf.jdbc.JdbcRslt;
 import com.ingres.gcf.util.IdMap;
@@ -48,19 +58,14 @@ import xdev.db.StoredProcedure;
 import xdev.db.StoredProcedure.Param;
 import xdev.db.StoredProcedure.ParamType;
 import xdev.db.StoredProcedure.ReturnTypeFlavor;
+import xdev.db.ingres.jdbc.IngresMetaDataCache.ForeignKey;
 import xdev.db.jdbc.JDBCConnection;
 import xdev.db.jdbc.JDBCDataSource;
 import xdev.db.jdbc.JDBCMetaData;
-import xdev.util.CollectionUtils;
 import xdev.util.ProgressMonitor;
 import xdev.util.Settings;
 import xdev.util.StringUtils;
-import xdev.vt.Cardinality;
-import xdev.vt.EntityRelationship;
-import xdev.vt.EntityRelationship.Entity;
 import xdev.vt.EntityRelationshipModel;
-import xdev.vt.VirtualTable;
-import xdev.vt.VirtualTable.VirtualTableRow;
 
 
 public class IngresJDBCMetaData extends JDBCMetaData
@@ -105,15 +110,41 @@ public class IngresJDBCMetaData extends JDBCMetaData
 		new IdMap(21, "interval day to second")
 	};
 	
+	/**
+	 * Below this number of tables the metadata is always built sequentially.
+	 */
+	private static final int PARALLEL_BUILD_THRESHOLD = 64;
+	
+	/**
+	 * Tables submitted per thread of the fork-join pool ahead of the one collected next. Bounds the catalog rows
+	 * held by pending tasks.
+	 */
+	private static final int PARALLEL_BUILD_WINDOW = 16;
+	
+	/**
+	 * Catalog queries are restricted to the requested tables if less than 1/FILTERED_QUERY_RATIO of the schema is
+	 * requested.
+	 */
+	private static final int FILTERED_QUERY_RATIO = 4;
+	
+	private static final int FILTERED_QUERY_MAX_TABLES = 2000;
+	
+	private static final int FILTERED_QUERY_BATCH_SIZE = 100;
+	
 	public IngresJDBCMetaData(final IngresJDBCDataSource dataSource) throws DBException
 	{
 		super(dataSource);
 	}
 	
+	private IngresJDBCDataSource getIngresDataSource()
+	{
+		return (IngresJDBCDataSource)this.dataSource;
+	}
+	
 	/*
 	 * Taken from JdbcDBMD
 	 */
-	private static int convToJavaType(final int ingresType, final int columnLength)
+	static int convToJavaType(final int ingresType, final int columnLength)
 	{
 		switch(ingresType)
 		{
@@ -226,7 +257,7 @@ public class IngresJDBCMetaData extends JDBCMetaData
 	/*
 	 * Taken from JdbcDBMD
 	 */
-	private static int colSize(final int ingresType, final int sqlType) throws SQLException
+	static int colSize(final int ingresType, final int sqlType) throws SQLException
 	{
 		switch(sqlType)
 		{
@@ -276,58 +307,30 @@ public class IngresJDBCMetaData extends JDBCMetaData
 		return -1;
 	}
 	
-	private static void buildEntityRelationship(
-		final EntityRelationshipModel model,
+	/**
+	 * @param typeName lower case name of an Ingres data type
+	 * @return the Ingres type code
+	 */
+	static int getIngresType(final String typeName)
+	{
+		return IdMap.get(typeName, dataTypeMap);
+	}
+	
+	private static void addForeignKey(
+		final Map<String, List<ForeignKey>> foreignKeys,
+		final Set<String> tables,
 		final String pkTable,
 		final String fkTable,
 		final List<String> pkColumns,
 		final List<String> fkColumns)
 	{
-		model.add(new EntityRelationship(
-			new Entity(pkTable, pkColumns.toArray(new String[pkColumns.size()]), Cardinality.ONE),
-			new Entity(fkTable, fkColumns.toArray(new String[fkColumns.size()]), Cardinality.MANY)));
-		pkColumns.clear();
-		fkColumns.clear();
-	}
-	
-	/**
-	 * Checks if the map if the key is one of the follow to add the according ParamType to the list
-	 * <ol>
-	 *     <li>IN</li>
-	 *     <li>OUT</li>
-	 *     <li>IN_OUT</li>
-	 * </ol>
-	 */
-	private static void addParamAccordingToType(final List<Param> params, final Map<String, Object> map)
-	{
-		if(Boolean.TRUE.equals(map.get("IS_INPUT")))
-		{
-			params.add(new Param(ParamType.IN, (String)map.get("PARAM_NAME"), (DataType)map.get("DATA_TYPE")));
-		}
-		else if(Boolean.TRUE.equals(map.get("IS_OUTPUT")))
+		if(!pkColumns.isEmpty() && tables.contains(fkTable))
 		{
-			params.add(new Param(ParamType.OUT, (String)map.get("PARAM_NAME"), (DataType)map.get("DATA_TYPE")));
+			foreignKeys.computeIfAbsent(fkTable, table -> new ArrayList<>()).add(new ForeignKey(pkTable, fkTable,
+				pkColumns.toArray(new String[pkColumns.size()]), fkColumns.toArray(new String[fkColumns.size()])));
 		}
-		else if(Boolean.TRUE.equals(map.get("IS_INOUT")))
-		{
-			params.add(new Param(ParamType.IN_OUT, (String)map.get("PARAM_NAME"), (DataType)map.get("DATA_TYPE")));
-		}
-	}
-	
-	private static Map<String, Object> generateStringObjectMap(
-		final DataType dataType,
-		final String paramName,
-		final boolean isInOut,
-		final boolean isOut,
-		final boolean isIn)
-	{
-		final Map<String, Object> map = new HashMap<>();
-		map.put("DATA_TYPE", dataType);
-		map.put("IS_INPUT", isIn);
-		map.put("IS_OUTPUT", isOut);
-		map.put("IS_INOUT", isInOut);
-		map.put("PARAM_NAME", paramName);
-		return map;
+		pkColumns.clear();
+		fkColumns.clear();
 	}
 	
 	@Override
@@ -351,6 +354,36 @@ public class IngresJDBCMetaData extends JDBCMetaData
 	@Override
 	public TableInfo[] getTableInfos(final ProgressMonitor monitor, final EnumSet<TableType> types)
 		throws DBException
+	{
+		final IngresMetaDataCache cache = this.getIngresDataSource().getMetaDataCache();
+		if(cache == null)
+		{
+			return this.getTableInfos0(monitor, types);
+		}
+		
+		final String stamp;
+		try(final JDBCConnection jdbcConnection = (JDBCConnection)this.dataSource.openConnection())
+		{
+			stamp = this.loadTableInfosStamp(jdbcConnection);
+		}
+		
+		TableInfo[] tables = cache.getTableInfos(types, stamp);
+		if(tables != null)
+		{
+			monitor.done();
+			return tables;
+		}
+		
+		tables = this.getTableInfos0(monitor, types);
+		if(!monitor.isCanceled())
+		{
+			cache.putTableInfos(types, stamp, tables);
+		}
+		return tables;
+	}
+	
+	private TableInfo[] getTableInfos0(final ProgressMonitor monitor, final EnumSet<TableType> types)
+		throws DBException
 	{
 		monitor.beginTask("", ProgressMonitor.UNKNOWN);
 		
@@ -378,7 +411,8 @@ public class IngresJDBCMetaData extends JDBCMetaData
 			}
 			if(s != null)
 			{
-				final Result result = jdbcConnection.query("SELECT table_name, table_type FROM iitables "
+				final Result result = this.catalogQuery(jdbcConnection,
+					"SELECT table_name, table_type FROM iitables "
 					+ "where system_use<>'S' and table_name not like 'ii%' and " + s
 					+ " order by table_name");
 				while(result.next() && !monitor.isCanceled())
@@ -409,7 +443,12 @@ public class IngresJDBCMetaData extends JDBCMetaData
 		
 		try
 		{
-			return this.getTableMetaData0(monitor, flags, tables);
+			final IngresMetaDataCache cache = this.getIngresDataSource().getMetaDataCache();
+			if(cache == null)
+			{
+				return this.getTableMetaData0(monitor, flags, tables);
+			}
+			return this.getCachedTableMetaData(cache, monitor, flags, tables);
 		}
 		finally
 		{
@@ -417,7 +456,12 @@ public class IngresJDBCMetaData extends JDBCMetaData
 		}
 	}
 	
-	private TableMetaData[] getTableMetaData0(
+	/**
+	 * Serves the tables whose catalog signature is unchanged from the cache and loads only the others. As long as
+	 * the catalog stamp of the schema is unchanged, the signatures are not read at all.
+	 */
+	private TableMetaData[] getCachedTableMetaData(
+		final IngresMetaDataCache cache,
 		final ProgressMonitor monitor, final int flags,
 		final TableInfo... tables) throws DBException
 	{
@@ -426,594 +470,1413 @@ public class IngresJDBCMetaData extends JDBCMetaData
 			return new TableMetaData[0];
 		}
 		
-		final List<TableMetaData> list = new ArrayList<>(tables.length);
+		final TableMetaData[] metaData = new TableMetaData[tables.length];
+		final List<TableInfo> outdated = new ArrayList<>();
+		final String stamp;
+		Map<String, String> signatures = Collections.emptyMap();
 		
 		try(final JDBCConnection jdbcConnection = (JDBCConnection)this.dataSource.openConnection())
 		{
-			monitor.beginTask("", ProgressMonitor.UNKNOWN);
-			
-			final List<String> params = new ArrayList<>();
-			params.add(this.dataSource.getUserName());
-			
-			final String sbColumns = "select * " +
-				"from iicolumns " +
-				"where table_owner=? and table_name not like '$%' " +
-				"order by table_name, column_sequence";
-			
-			Result result = jdbcConnection.query(sbColumns, params.toArray());
-			final VirtualTable vtColumns = new VirtualTable(result, true);
-			result.close();
+			stamp = this.loadSchemaStamp(jdbcConnection);
 			
-			final Map<String, List<VirtualTableRow>> columnMap = this.toMap(vtColumns, "table_name");
-			Map<String, List<VirtualTableRow>> primaryKeyMap = null;
-			Map<String, List<VirtualTableRow>> indexMap = null;
-			
-			if((flags & INDICES) != 0 && !monitor.isCanceled())
+			final List<TableInfo> unverified = new ArrayList<>();
+			for(int i = 0; i < tables.length; i++)
 			{
-				final String sbPrimaryKeys =
-					"select distinct k.schema_name, k.table_name, k.column_name, "
-						+ "k.key_position, k.constraint_name " +
-						"from iikeys k, iiconstraints c " +
-						"where c.constraint_type = 'P'  and k.constraint_name = c.constraint_name " +
-						"and k.schema_name=? order by table_name, key_position";
-				
-				Result rs = jdbcConnection.query(sbPrimaryKeys, params.toArray());
-				final VirtualTable vtPrimaryKeys = new VirtualTable(rs, true);
-				rs.close();
-				primaryKeyMap = this.toMap(vtPrimaryKeys, "table_name");
-				
-				final String sbIndexes = "select idx.base_owner, idx.base_name, idx.unique_rule, " +
-					"idx.index_owner, idx.index_name, idc.key_sequence, idc.column_name, " +
-					"idc.sort_direction " +
-					"from iiindexes idx, iiindex_columns idc " +
-					"where idx.index_owner = idc.index_owner and idx.index_name = idc.index_name " +
-					"and idx.unique_rule = 'U' " + // fetch only
-					// unique
-					// indexes
-					"and idx.base_owner=? " +
-					"order by 3 desc, 5, 6";
-				
-				rs = jdbcConnection.query(sbIndexes, params.toArray());
-				final VirtualTable vtIndexes = new VirtualTable(rs, true);
-				rs.close();
-				indexMap = this.toMap(vtIndexes, "base_name");
+				metaData[i] = cache.getTableMetaData(tables[i].getName(), flags, stamp);
+				if(metaData[i] == null)
+				{
+					unverified.add(tables[i]);
+				}
 			}
 			
-			final Map<Object, Object> defaultValueMap = new HashMap<>();
-			
-			if(!monitor.isCanceled())
+			if(!unverified.isEmpty())
 			{
-				final Set<Object> defaultValueSet = new HashSet<>();
-				final int rc = vtColumns.getRowCount();
-				final int hasDefaultIndex = vtColumns.getColumnIndex("column_has_default");
-				final int columnDefaultIndex = vtColumns.getColumnIndex("column_default_val");
-				for(int i = 0; i < rc; i++)
-				{
-					if(hasDefaultIndex == -1 || "Y".equals(vtColumns.getValueAt(i, hasDefaultIndex)))
-					{
-						final Object defaultValue = vtColumns.getValueAt(i, columnDefaultIndex);
-						if(defaultValue != null
-							&& !defaultValue.toString().startsWith("next value for"))
-						{
-							if("".equals(defaultValue))
-							{
-								defaultValueSet.add("''");
-							}
-							else
-							{
-								defaultValueSet.add(defaultValue);
-							}
-						}
-					}
-				}
-				
-				if(!defaultValueSet.isEmpty())
+				signatures = this.loadCatalogSignatures(jdbcConnection,
+					this.getTableNames(unverified.toArray(new TableInfo[unverified.size()])));
+				for(int i = 0; i < tables.length; i++)
 				{
-					final Object[] defaultValues = defaultValueSet.toArray();
-					
-					final StringBuilder sbDefaultValues = new StringBuilder("SELECT ");
-					sbDefaultValues.append(StringUtils.concat(",", defaultValues));
-					
-					try
+					if(metaData[i] == null)
 					{
-						result = jdbcConnection.query(sbDefaultValues.toString());
-						try
+						final String tableName = tables[i].getName();
+						metaData[i] = cache.revalidateTableMetaData(tableName, flags, signatures.get(tableName),
+							stamp);
+						if(metaData[i] == null)
 						{
-							result.next();
-							for(int i = 0, cc = result.getColumnCount(); i < cc; i++)
-							{
-								defaultValueMap.put(defaultValues[i], result.getObject(i));
-							}
+							outdated.add(tables[i]);
 						}
-						finally
-						{
-							result.close();
-						}
-					}
-					catch(final Exception e)
-					{
-						System.err.println("Ingres: Error retrieving column default values:");
-						e.printStackTrace();
 					}
 				}
 			}
-			
-			monitor.beginTask("", tables.length);
-			
-			int done = 0;
-			for(final TableInfo table : tables)
-			{
-				if(monitor.isCanceled())
-				{
-					break;
-				}
-				
-				monitor.setTaskName(table.getName());
-				try
-				{
-					list.add(this.getTableMetaData(table, flags, columnMap, primaryKeyMap, indexMap,
-						defaultValueMap));
-				}
-				catch(final Exception e)
-				{
-					e.printStackTrace();
-				}
-				monitor.worked(++done);
-			}
 		}
 		
-		monitor.done();
+		if(outdated.isEmpty())
+		{
+			monitor.done();
+			return metaData;
+		}
 		
+		final Map<String, TableMetaData> loaded = new HashMap<>();
+		for(final TableMetaData table : this.getTableMetaData0(monitor, flags,
+			outdated.toArray(new TableInfo[outdated.size()])))
+		{
+			final String tableName = table.getTableInfo().getName();
+			loaded.put(tableName, table);
+			cache.putTableMetaData(tableName, flags, signatures.get(tableName), stamp, table);
+		}
+		
+		final List<TableMetaData> list = new ArrayList<>(tables.length);
+		for(int i = 0; i < tables.length; i++)
+		{
+			final TableMetaData table = metaData[i] != null ? metaData[i] : loaded.get(tables[i].getName());
+			if(table != null)
+			{
+				list.add(table);
+			}
+		}
 		return list.toArray(new TableMetaData[list.size()]);
 	}
 	
-	private TableMetaData getTableMetaData(
-		final TableInfo table,
-		final int flags,
-		final Map<String, List<VirtualTableRow>> columnMap,
-		final Map<String, List<VirtualTableRow>> primaryKeyMap,
-		final Map<String, List<VirtualTableRow>> indexMap,
-		final Map<Object, Object> defaultValueMap)
-		throws Exception
+	/**
+	 * Reads the catalog stamp of the listed tables, a single row of aggregates which changes whenever a table or
+	 * view is created, dropped or altered. It covers the same tables as {@link #getTableInfos0(ProgressMonitor,
+	 * EnumSet)}.
+	 */
+	private String loadTableInfosStamp(final JDBCConnection jdbcConnection) throws DBException
 	{
-		int column_bydefault_ident_index = -2;
-		
-		final String tableName = table.getName();
-		final List<VirtualTableRow> columnRows = columnMap.get(tableName);
-		final int columnCount = columnRows.size();
-		final ColumnMetaData[] columns = new ColumnMetaData[columnCount];
-		for(int i = 0; i < columnCount; i++)
+		return this.loadStamp(jdbcConnection,
+			"SELECT count(*), max(create_date), max(alter_date) FROM iitables "
+				+ "where system_use<>'S' and table_name not like 'ii%' and table_type in('T','V')");
+	}
+	
+	/**
+	 * Reads the catalog stamp of the tables of the current user, a row of aggregates over <code>iitables</code> and
+	 * one over <code>iiindexes</code>. The stamp changes whenever one of the signatures read by
+	 * {@link #loadCatalogSignatures(JDBCConnection, List)} changes.
+	 */
+	private String loadSchemaStamp(final JDBCConnection jdbcConnection) throws DBException
+	{
+		final String owner = this.dataSource.getUserName();
+		return this.loadStamp(jdbcConnection,
+			"SELECT count(*), max(create_date), max(alter_date), max(modify_date) FROM iitables "
+				+ "where table_owner=? and table_name not like 'ii%' and table_type in('T','V') "
+				+ "union all "
+				+ "SELECT count(*), max(create_date), max(create_date), max(create_date) FROM iiindexes "
+				+ "where base_owner=? and base_name not like 'ii%'",
+			owner, owner);
+	}
+	
+	private String loadStamp(final JDBCConnection jdbcConnection, final String sql, final Object... params)
+		throws DBException
+	{
+		final StringBuilder stamp = new StringBuilder();
+		try(final Result result = this.catalogQuery(jdbcConnection, sql, params))
 		{
-			final VirtualTableRow dataRow = columnRows.get(i);
-			final String columnName = (String)dataRow.get("column_name");
-			final String caption = null;
-			
-			int ingresType = ((Number)dataRow.get("column_ingdatatype")).intValue();
-			if(ingresType != -1)
-			{
-				ingresType = Math.abs(ingresType);
-			}
-			else
-			{
-				final String typeName = ((String)dataRow.get("column_datatype")).toLowerCase();
-				ingresType = IdMap.get(typeName, dataTypeMap);
-			}
-			
-			int length = ((Number)dataRow.get("column_length")).intValue();
-			final int scale = ((Number)dataRow.get("column_scale")).intValue();
-			
-			final int sqlType = convToJavaType(ingresType, length);
-			final DataType type = DataType.get(sqlType);
-			
-			final int colSize = colSize(ingresType, sqlType);
-			if(colSize >= 0)
-			{
-				length = colSize;
-			}
-			
-			final Object defaultValue = defaultValueMap.get(dataRow.get("column_default_val"));
-			final boolean nullable = "Y".equals(dataRow.get("column_nulls"));
-			
-			boolean autoIncrement = false;
-			if(column_bydefault_ident_index == -2)
-			{
-				// column_bydefault_ident available since Ingres 10
-				column_bydefault_ident_index = dataRow.getVirtualTable().getColumnIndex(
-					"column_bydefault_ident");
-			}
-			if(column_bydefault_ident_index != -1)
+			while(result.next())
 			{
-				autoIncrement = "Y".equals(dataRow.get(column_bydefault_ident_index));
+				for(int i = 0, cc = result.getColumnCount(); i < cc; i++)
+				{
+					stamp.append(result.getObject(i)).append('/');
+				}
+				stamp.append(';');
 			}
-			
-			columns[i] = new ColumnMetaData(tableName, columnName, caption, type, length, scale,
-				defaultValue, nullable, autoIncrement);
 		}
+		return stamp.toString();
+	}
+	
+	/**
+	 * Reads a change indicator for the requested tables of the current user. The signature of a table changes
+	 * whenever it is recreated (<code>table_reltid</code>), altered, modified or one of its secondary indexes is
+	 * created or dropped.
+	 *
+	 * @param tableNames the sorted table names
+	 * @return table name -&gt; signature
+	 */
+	private Map<String, String> loadCatalogSignatures(
+		final JDBCConnection jdbcConnection,
+		final List<String> tableNames) throws DBException
+	{
+		final Map<String, String> signatures = new HashMap<>();
 		
-		final Map<IndexInfo, Set<String>> indexColumnMap = new LinkedHashMap<>();
-		final int rowCount = UNKNOWN_ROW_COUNT;
+		final List<String> params = Collections.singletonList(this.dataSource.getUserName());
+		final List<String> filter = this.isFilteredCatalogQuery(jdbcConnection, tableNames.size())
+			? tableNames
+			: null;
+		final Set<String> tables = new HashSet<>(tableNames);
 		
-		if(table.getType() == TableType.TABLE
-			&& (flags & INDICES) != 0
-		)
+		for(final IngresCatalogCursor.Query query : this.catalogQueries(jdbcConnection,
+			"SELECT table_name, table_reltid, alter_date, modify_date FROM iitables "
+				+ "where table_owner=? and table_name not like 'ii%' and table_type in('T','V') ",
+			"table_name", "order by table_name", params, filter))
 		{
-			final Set<String> pkColumns = new HashSet<>();
-			
-			if(primaryKeyMap != null)
+			try(final Result result = query.execute())
 			{
-				final List<VirtualTableRow> pkRows = primaryKeyMap.get(tableName);
-				if(pkRows != null && !pkRows.isEmpty())
+				while(result.next())
 				{
-					final String indexName = (String)pkRows.get(0).get("constraint_name");
-					for(final VirtualTableRow pkRow : pkRows)
+					final String tableName = result.getString("table_name").trim();
+					if(tables.contains(tableName))
 					{
-						pkColumns.add((String)pkRow.get("column_name"));
+						signatures.put(tableName, result.getString("table_reltid") + "/"
+							+ result.getString("alter_date") + "/" + result.getString("modify_date"));
 					}
-					indexColumnMap
-						.put(new IndexInfo(indexName, IndexType.PRIMARY_KEY), pkColumns);
 				}
 			}
-			
-			if(indexMap != null)
+		}
+		
+		for(final IngresCatalogCursor.Query query : this.catalogQueries(jdbcConnection,
+			"SELECT base_name, index_name, create_date FROM iiindexes "
+				+ "where base_owner=? and base_name not like 'ii%' ",
+			"base_name", "order by base_name, index_name", params, filter))
+		{
+			try(final Result result = query.execute())
 			{
-				final List<VirtualTableRow> indexRows = indexMap.get(tableName);
-				if(indexRows != null && !indexRows.isEmpty())
+				while(result.next())
 				{
-					for(final VirtualTableRow pkRow : indexRows)
+					final String tableName = result.getString("base_name").trim();
+					if(tables.contains(tableName))
 					{
-						final String indexName = (String)pkRow.get("index_name");
-						final String columnName = (String)pkRow.get("column_name");
-						if(indexName != null
-							&& columnName != null
-							&& !pkColumns.contains(columnName)
-						)
-						{
-							final boolean unique = "U".equals(pkRow.get("unique_rule"));
-							final IndexInfo info = new IndexInfo(indexName, unique ? IndexType.UNIQUE
-								: IndexType.NORMAL);
-							Set<String> columnNames = indexColumnMap.get(info);
-							if(columnNames == null)
-							{
-								columnNames = new HashSet<>();
-								indexColumnMap.put(info, columnNames);
-							}
-							columnNames.add(columnName);
-						}
+						signatures.merge(tableName,
+							result.getString("index_name").trim() + "@" + result.getString("create_date"),
+							(first, second) -> first + ";" + second);
 					}
 				}
 			}
 		}
 		
-		final Index[] indices = new Index[indexColumnMap.size()];
-		int i = 0;
-		for(final IndexInfo indexInfo : indexColumnMap.keySet())
-		{
-			final Set<String> columnList = indexColumnMap.get(indexInfo);
-			final String[] indexColumns = columnList.toArray(new String[columnList.size()]);
-			indices[i++] = new Index(indexInfo.name, indexInfo.type, indexColumns);
-		}
-		
-		return new TableMetaData(table, columns, indices, rowCount);
+		return signatures;
 	}
 	
-	@Override
-	public EntityRelationshipModel getEntityRelationshipModel(
-		final ProgressMonitor monitor,
-		final TableInfo... tableInfos) throws DBException
+	/**
+	 * Builds the metadata in a single pass over the catalog. Columns, primary keys and indexes are read with one
+	 * cursor each, all ordered by table name, and merge-joined table by table, so only the rows of the current
+	 * table are held in memory.
+	 */
+	private TableMetaData[] getTableMetaData0(
+		final ProgressMonitor monitor, final int flags,
+		final TableInfo... tables) throws DBException
 	{
-		monitor.beginTask("", ProgressMonitor.UNKNOWN);
-		monitor.setTaskName("");
-		
-		final EntityRelationshipModel model = new EntityRelationshipModel();
+		if(tables == null || tables.length == 0)
+		{
+			return new TableMetaData[0];
+		}
 		
-		final List<String> tables = new ArrayList<>();
-		for(final TableInfo table : tableInfos)
+		// the cursors deliver the tables in name order
+		final Integer[] order = new Integer[tables.length];
+		for(int i = 0; i < order.length; i++)
 		{
-			if(table.getType() == TableType.TABLE)
-			{
-				tables.add(table.getName());
-			}
+			order[i] = i;
 		}
-		Collections.sort(tables);
+		Arrays.sort(order, (first, second) -> tables[first].getName().compareTo(tables[second].getName()));
 		
-		try(final JDBCConnection jdbcConnection = (JDBCConnection)this.dataSource.openConnection())
+		final TableMetaData[] metaData = new TableMetaData[tables.length];
+		
+		try(final IngresJDBCConnection jdbcConnection = (IngresJDBCConnection)this.dataSource.openConnection())
 		{
-			final String sbKeys = "select distinct p.schema_name, p.table_name, p.column_name, " +
-				"f.schema_name, f.table_name, f.column_name, f.key_position, " +
-				"f.constraint_name, p.constraint_name " +
-				"from iikeys p, iiconstraints c, " +
-				"iiref_constraints rc, iikeys f " +
-				"where c.constraint_type = 'R' and c.constraint_name = rc.ref_constraint_name " +
-				"and p.constraint_name = rc.unique_constraint_name " +
-				"and f.constraint_name = rc.ref_constraint_name " +
-				"and p.key_position = f.key_position and p.schema_name=? " +
-				"order by 4, 5, 7";
+			monitor.beginTask("", ProgressMonitor.UNKNOWN);
 			
 			final List<String> params = new ArrayList<>();
 			params.add(this.dataSource.getUserName());
 			
-			try(final Result rs = jdbcConnection.query(sbKeys, params.toArray()))
+			// null loads the whole schema
+			final List<String> tableNames = this.isFilteredCatalogQuery(jdbcConnection, tables.length)
+				? this.getTableNames(tables)
+				: null;
+			
+			final Set<String> catalogColumns = this.loadCatalogColumns(jdbcConnection);
+			if(Boolean.TRUE.equals(this.dataSource.getParameterValue(
+				IngresJDBCDataSource.METADATA_CONCURRENT_CATALOG)))
 			{
-				String pkTable = null;
-				String fkTable = null;
-				final List<String> pkColumns = new ArrayList<>();
-				final List<String> fkColumns = new ArrayList<>();
-				
-				while(rs.next())
-				{
-					final short keyPos = rs.getShort("key_position");
-					
-					if(keyPos == 1
-						&& !pkColumns.isEmpty()
-						&& tables.contains(pkTable)
-						&& tables.contains(fkTable))
-					{
-						buildEntityRelationship(model, pkTable, fkTable, pkColumns, fkColumns);
-					}
-					
-					pkTable = rs.getString(1).trim();
-					fkTable = rs.getString(4).trim();
-					
-					pkColumns.add(rs.getString(2).trim());
-					fkColumns.add(rs.getString(5).trim());
-				}
-				
-				if(!pkColumns.isEmpty()
-					&& tables.contains(pkTable)
-					&& tables.contains(fkTable)
-				)
-				{
-					buildEntityRelationship(model, pkTable, fkTable, pkColumns, fkColumns);
-				}
+				this.buildFromConcurrentCatalog(monitor, flags, tables, order, metaData, params, tableNames,
+					catalogColumns);
+				monitor.done();
+				return compact(metaData);
+			}
+			
+			final Map<Object, Object> defaultValueMap = monitor.isCanceled()
+				? Collections.emptyMap()
+				: this.loadDefaultValues(jdbcConnection, params, tableNames,
+					catalogColumns.contains("column_has_default"));
+			
+			monitor.beginTask("", tables.length);
+			
+			// Ingres keeps only one cursor open per session in auto-commit mode
+			final boolean autoCommit = jdbcConnection.setAutoCommit(false);
+			try(final IngresCatalogCursor<ColumnRow> columnCursor = this.openColumnCursor(jdbcConnection, params,
+				tableNames, catalogColumns.contains("column_bydefault_ident"));
+				final IngresCatalogCursor<KeyRow> primaryKeyCursor = (flags & INDICES) != 0
+					? this.openPrimaryKeyCursor(jdbcConnection, params, tableNames)
+					: null;
+				final IngresCatalogCursor<IndexRow> indexCursor = (flags & INDICES) != 0
+					? this.openIndexCursor(jdbcConnection, params, tableNames)
+					: null)
+			{
+				this.buildTableMetaData(monitor, flags, tables, order, metaData, columnCursor, primaryKeyCursor,
+					indexCursor, defaultValueMap);
+			}
+			finally
+			{
+				jdbcConnection.setAutoCommit(autoCommit);
 			}
 		}
 		
 		monitor.done();
 		
-		return model;
+		return compact(metaData);
 	}
 	
-	private Map<String, List<VirtualTableRow>> toMap(final VirtualTable vt, final String columnName)
+	private static TableMetaData[] compact(final TableMetaData[] metaData)
 	{
-		final Map<String, List<VirtualTableRow>> columnMap = new HashMap<>();
-		final int tableNameColumnIndex = vt.getColumnIndex(columnName);
-		for(final VirtualTableRow row : vt.rows())
+		final List<TableMetaData> list = new ArrayList<>(metaData.length);
+		for(final TableMetaData table : metaData)
 		{
-			CollectionUtils.accumulate(columnMap, (String)row.get(tableNameColumnIndex), row);
+			if(table != null)
+			{
+				list.add(table);
+			}
 		}
-		return columnMap;
+		return list.toArray(new TableMetaData[list.size()]);
 	}
 	
-	@Override
-	public StoredProcedure[] getStoredProcedures(final ProgressMonitor monitor) throws DBException
+	/**
+	 * Runs the catalog queries concurrently, each on its own connection, so their round trips overlap instead of
+	 * adding up. All cursors execute their first query before the merge join starts.
+	 */
+	private void buildFromConcurrentCatalog(
+		final ProgressMonitor monitor,
+		final int flags,
+		final TableInfo[] tables,
+		final Integer[] order,
+		final TableMetaData[] metaData,
+		final List<String> params,
+		final List<String> tableNames,
+		final Set<String> catalogColumns) throws DBException
 	{
-		monitor.beginTask("", ProgressMonitor.UNKNOWN);
-		
-		final List<StoredProcedure> storedProcedures = new ArrayList<>();
-		
+		final boolean indices = (flags & INDICES) != 0;
+		final List<JDBCConnection> connections = Collections.synchronizedList(new ArrayList<>());
+		final List<Future<?>> futures = new ArrayList<>(4);
+		final ExecutorService executor = Executors.newFixedThreadPool(indices ? 4 : 2);
 		try
 		{
-			final ConnectionProvider connectionProvider = this.dataSource.getConnectionProvider();
-			
-			try(final Connection connection = connectionProvider.getConnection())
+			final Future<Map<Object, Object>> defaultValues = executor.submit(() -> this.loadDefaultValues(
+				this.openCatalogConnection(connections), params, tableNames,
+				catalogColumns.contains("column_has_default")));
+			futures.add(defaultValues);
+			final Future<IngresCatalogCursor<ColumnRow>> columns = executor.submit(() -> this.openColumnCursor(
+				this.openCatalogConnection(connections), params, tableNames,
+				catalogColumns.contains("column_bydefault_ident")).open());
+			futures.add(columns);
+			final Future<IngresCatalogCursor<KeyRow>> primaryKeys = indices
+				? executor.submit(() -> this.openPrimaryKeyCursor(this.openCatalogConnection(connections), params,
+					tableNames).open())
+				: null;
+			final Future<IngresCatalogCursor<IndexRow>> indexes = indices
+				? executor.submit(() -> this.openIndexCursor(this.openCatalogConnection(connections), params,
+					tableNames).open())
+				: null;
+			if(indices)
 			{
-				final DatabaseMetaData meta = connection.getMetaData();
-				
-				// key: procedure name; value: list column maps, each column has
-				// one own list entry
-				final Map<String, List<Map<String, Object>>> proceduresMap = new HashMap<>();
-				final Statement statement = connection.createStatement();
-				this.addProcedureColumns(proceduresMap, statement);
-				
-				// catalog and schema only works with null
-				// see #13485
-				final ResultSet rs = meta.getProcedures(null, null, null);
-				this.addStoredProcedures(monitor, storedProcedures, proceduresMap, rs);
+				futures.add(primaryKeys);
+				futures.add(indexes);
 			}
+			
+			final Map<Object, Object> defaultValueMap = this.join(defaultValues);
+			final IngresCatalogCursor<ColumnRow> columnCursor = this.join(columns);
+			final IngresCatalogCursor<KeyRow> primaryKeyCursor = indices ? this.join(primaryKeys) : null;
+			final IngresCatalogCursor<IndexRow> indexCursor = indices ? this.join(indexes) : null;
+			
+			monitor.beginTask("", tables.length);
+			this.buildTableMetaData(monitor, flags, tables, order, metaData, columnCursor, primaryKeyCursor,
+				indexCursor, defaultValueMap);
 		}
-		catch(final SQLException e)
+		finally
 		{
+			// connections are registered by the tasks, so wait for all of them before closing
+			for(final Future<?> future : futures)
+			{
+				try
+				{
+					future.get();
+				}
+				catch(final InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				catch(final ExecutionException e)
+				{
+					// reported by join
+				}
+			}
+			executor.shutdown();
+			for(final JDBCConnection connection : connections)
+			{
+				// closes the open cursors as well
+				try
+				{
+					connection.close();
+				}
+				catch(final DBException e)
+				{
+					// the catalog has been read or the build has already failed
+				}
+			}
+		}
+	}
+	
+	private IngresJDBCConnection openCatalogConnection(final List<JDBCConnection> connections) throws DBException
+	{
+		final IngresJDBCConnection connection = (IngresJDBCConnection)this.dataSource.openConnection();
+		connections.add(connection);
+		return connection;
+	}
+	
+	private <T> T join(final Future<T> future) throws DBException
+	{
+		try
+		{
+			return future.get();
+		}
+		catch(final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
 			throw new DBException(this.dataSource, e);
 		}
-		
-		monitor.done();
-		
-		return storedProcedures.toArray(new StoredProcedure[storedProcedures.size()]);
+		catch(final ExecutionException e)
+		{
+			if(e.getCause() instanceof DBException)
+			{
+				throw (DBException)e.getCause();
+			}
+			throw new DBException(this.dataSource, e.getCause());
+		}
 	}
 	
-	private void addStoredProcedures(
+	/**
+	 * Builds the metadata sequentially or, with {@link IngresJDBCDataSource#METADATA_PARALLELISM}, on a fork-join
+	 * pool.
+	 */
+	private void buildTableMetaData(
 		final ProgressMonitor monitor,
-		final List<StoredProcedure> storedProcedures,
-		final Map<String, List<Map<String, Object>>> proceduresMap,
-		final ResultSet rs)
-		throws SQLException
+		final int flags,
+		final TableInfo[] tables,
+		final Integer[] order,
+		final TableMetaData[] metaData,
+		final IngresCatalogCursor<ColumnRow> columnCursor,
+		final IngresCatalogCursor<KeyRow> primaryKeyCursor,
+		final IngresCatalogCursor<IndexRow> indexCursor,
+		final Map<Object, Object> defaultValueMap) throws DBException
 	{
-		while(rs.next() && !monitor.isCanceled())
+		final int parallelism = this.getIngresDataSource().getIntParameter(
+			IngresJDBCDataSource.METADATA_PARALLELISM);
+		final ForkJoinPool pool = parallelism > 1 && tables.length >= PARALLEL_BUILD_THRESHOLD
+			? new ForkJoinPool(parallelism)
+			: null;
+		try
 		{
-			ReturnTypeFlavor returnTypeFlavor = ReturnTypeFlavor.VOID;
-			final String name = rs.getString("PROCEDURE_NAME");
-			
-			final String description = rs.getString("REMARKS");
-			
-			DataType returnType = null;
+			this.buildTableMetaData(monitor, flags, tables, order, metaData, pool, columnCursor, primaryKeyCursor,
+				indexCursor, defaultValueMap);
+		}
+		finally
+		{
+			if(pool != null)
+			{
+				pool.shutdownNow();
+			}
+		}
+	}
+	
+	/**
+	 * Reads the rows of the tables in name order and builds their metadata, either right away or, if a
+	 * <code>pool</code> is given, as tasks of the pool. Tasks are collected in name order on the calling thread, so
+	 * progress is reported and cancellation is checked on the thread that owns the monitor. Each task holds the
+	 * catalog rows of its table, so at most {@link #PARALLEL_BUILD_WINDOW} tasks per thread are pending before the
+	 * oldest one is collected. The failure of a task is thrown as {@link DBException}.
+	 */
+	private void buildTableMetaData(
+		final ProgressMonitor monitor,
+		final int flags,
+		final TableInfo[] tables,
+		final Integer[] order,
+		final TableMetaData[] metaData,
+		final ForkJoinPool pool,
+		final IngresCatalogCursor<ColumnRow> columnCursor,
+		final IngresCatalogCursor<KeyRow> primaryKeyCursor,
+		final IngresCatalogCursor<IndexRow> indexCursor,
+		final Map<Object, Object> defaultValueMap) throws DBException
+	{
+		final Deque<Map.Entry<Integer, ForkJoinTask<TableMetaData>>> pending = pool != null
+			? new ArrayDeque<>()
+			: null;
+		final int window = pool != null ? pool.getParallelism() * PARALLEL_BUILD_WINDOW : 0;
+		
+		String previousName = null;
+		List<ColumnRow> columnRows = null;
+		List<KeyRow> primaryKeyRows = null;
+		List<IndexRow> indexRows = null;
+		
+		int done = 0;
+		for(final int index : order)
+		{
+			if(monitor.isCanceled())
+			{
+				return;
+			}
 			
-			final List<Param> params = new ArrayList<>();
+			final TableInfo table = tables[index];
+			final String tableName = table.getName();
+			// a table requested twice is served from the rows already read
+			if(!tableName.equals(previousName))
+			{
+				previousName = tableName;
+				columnRows = columnCursor.next(tableName);
+				primaryKeyRows = primaryKeyCursor != null ? primaryKeyCursor.next(tableName) : null;
+				indexRows = indexCursor != null ? indexCursor.next(tableName) : null;
+			}
+			if(pending != null)
+			{
+				ForkJoinTask<TableMetaData> task = null;
+				if(!columnRows.isEmpty())
+				{
+					final List<ColumnRow> taskColumnRows = columnRows;
+					final List<KeyRow> taskPrimaryKeyRows = primaryKeyRows;
+					final List<IndexRow> taskIndexRows = indexRows;
+					task = pool.submit(() -> this.getTableMetaData(table, flags, taskColumnRows,
+						taskPrimaryKeyRows, taskIndexRows, defaultValueMap));
+				}
+				pending.add(new AbstractMap.SimpleImmutableEntry<>(index, task));
+				if(pending.size() >= window)
+				{
+					this.collect(monitor, tables, metaData, pending.poll());
+					monitor.worked(++done);
+				}
+				continue;
+			}
 			
-			if(name != null && proceduresMap.containsKey(name))
+			monitor.setTaskName(tableName);
+			try
 			{
-				for(final Map<String, Object> map : proceduresMap.get(name))
+				// tables missing from the catalog are skipped
+				if(!columnRows.isEmpty())
 				{
-					
-					if(map.containsValue("RESULT_TYPE"))
-					{
-						returnTypeFlavor = (ReturnTypeFlavor)map.get("RETURN_TYPE_FLAVOR");
-						returnType = (DataType)map.get("DATA_TYPE");
-					}
-					else
-					{
-						addParamAccordingToType(params, map);
-					}
+					metaData[index] = this.getTableMetaData(table, flags, columnRows, primaryKeyRows, indexRows,
+						defaultValueMap);
 				}
 			}
-			storedProcedures.add(new StoredProcedure(
-				returnTypeFlavor,
-				returnType,
-				name,
-				description,
-				params.toArray(new Param[params.size()])
-			));
-		}
-		rs.close();
+			catch(final DBException e)
+			{
+				throw e;
+			}
+			catch(final Exception e)
+			{
+				// fails the whole call like a failed task of the parallel build
+				throw new DBException(this.dataSource, e);
+			}
+			monitor.worked(++done);
+		}
+		
+		while(pending != null && !pending.isEmpty())
+		{
+			if(monitor.isCanceled())
+			{
+				return;
+			}
+			this.collect(monitor, tables, metaData, pending.poll());
+			monitor.worked(++done);
+		}
 	}
 	
-	private void addProcedureColumns(
-		final Map<String, List<Map<String, Object>>> proceduresMap,
-		final Statement createStatement) throws SQLException
+	/**
+	 * Stores the result of a pending task, <code>null</code> for a table missing from the catalog.
+	 */
+	private void collect(
+		final ProgressMonitor monitor,
+		final TableInfo[] tables,
+		final TableMetaData[] metaData,
+		final Map.Entry<Integer, ForkJoinTask<TableMetaData>> pending) throws DBException
 	{
-		String sqlProcedureName = null;
-		ResultSet spColumnResultSet = null;
-		try
+		final int index = pending.getKey();
+		final ForkJoinTask<TableMetaData> task = pending.getValue();
+		monitor.setTaskName(tables[index].getName());
+		// a failed task fails the whole call, the remaining tasks are cancelled with the pool
+		metaData[index] = task != null ? this.join(task) : null;
+	}
+	
+	/**
+	 * @return the optional columns of <code>iicolumns</code> provided by the server, e.g.
+	 *         <code>column_bydefault_ident</code> is available since Ingres 10
+	 */
+	private Set<String> loadCatalogColumns(final JDBCConnection jdbcConnection) throws DBException
+	{
+		final Set<String> columns = new HashSet<>();
+		try(final Result result = this.catalogQuery(jdbcConnection,
+			"select column_name from iicolumns where table_name='iicolumns' "
+				+ "and column_name in ('column_has_default', 'column_bydefault_ident')"))
 		{
-			sqlProcedureName = "procedure_name";
-			spColumnResultSet = createStatement
-				.executeQuery("SELECT DISTINCT param_datatype_code,"
-					+ sqlProcedureName
-					+ ",param_input,param_output,param_inout, param_name,param_length FROM iiproc_params order by "
-					+ "procedure_owner, procedure_name, param_sequence");
+			while(result.next())
+			{
+				columns.add(trimmed(result, "column_name"));
+			}
 		}
-		catch(final SQLSyntaxErrorException e)
+		return columns;
+	}
+	
+	/**
+	 * Evaluates the distinct default values of the requested columns with a single <code>SELECT</code>.
+	 *
+	 * @return default value expression -&gt; value
+	 */
+	private Map<Object, Object> loadDefaultValues(
+		final JDBCConnection jdbcConnection,
+		final List<String> params,
+		final List<String> tableNames,
+		final boolean hasDefaultColumn) throws DBException
+	{
+		final String select = "select distinct column_default_val " +
+			"from iicolumns " +
+			"where table_owner=? and table_name not like '$%' and column_default_val is not null " +
+			(hasDefaultColumn ? "and column_has_default='Y' " : "");
+		
+		final Set<Object> defaultValueSet = new HashSet<>();
+		for(final IngresCatalogCursor.Query query : this.catalogQueries(jdbcConnection, select, "table_name", "",
+			params, tableNames))
 		{
-			if(e.getSQLState().equals(4205))
+			try(final Result result = query.execute())
 			{
-				// just in case the catalog iiproc_params does not exist try the
-				// catalog iigwprocparams and use proc_name instead of
-				// procedure_name.
-				// Found in Ingres Jdbc driver but is never used there.
-				sqlProcedureName = "proc_name";
-				spColumnResultSet = createStatement
-					.executeQuery("SELECT DISTINCT param_datatype_code,"
-						+ sqlProcedureName
-						+ ",param_input,param_output,param_inout, param_name,param_length FROM iigwprocparams order by"
-						+ " proc_owner, proc_name, param_sequence");
+				while(result.next())
+				{
+					final String defaultValue = trimmed(result, "column_default_val");
+					if(defaultValue != null && !defaultValue.startsWith("next value for"))
+					{
+						defaultValueSet.add("".equals(defaultValue) ? "''" : defaultValue);
+					}
+				}
 			}
-			else
+		}
+		
+		final Map<Object, Object> defaultValueMap = new HashMap<>();
+		if(defaultValueSet.isEmpty())
+		{
+			return defaultValueMap;
+		}
+		
+		final Object[] defaultValues = defaultValueSet.toArray();
+		
+		final StringBuilder sbDefaultValues = new StringBuilder("SELECT ");
+		sbDefaultValues.append(StringUtils.concat(",", defaultValues));
+		
+		try
+		{
+			final Result result = this.catalogQuery(jdbcConnection, sbDefaultValues.toString());
+			try
 			{
-				throw e;
+				result.next();
+				for(int i = 0, cc = result.getColumnCount(); i < cc; i++)
+				{
+					defaultValueMap.put(defaultValues[i], result.getObject(i));
+				}
+			}
+			finally
+			{
+				result.close();
 			}
 		}
+		catch(final Exception e)
+		{
+			System.err.println("Ingres: Error retrieving column default values:");
+			e.printStackTrace();
+		}
+		return defaultValueMap;
+	}
+	
+	private IngresCatalogCursor<ColumnRow> openColumnCursor(
+		final JDBCConnection jdbcConnection,
+		final List<String> params,
+		final List<String> tableNames,
+		final boolean identityColumn)
+	{
+		final String sbColumns = "select table_name, column_name, column_ingdatatype, column_datatype, " +
+			"column_length, column_scale, column_nulls, column_default_val" +
+			(identityColumn ? ", column_bydefault_ident " : " ") +
+			"from iicolumns " +
+			"where table_owner=? and table_name not like '$%' ";
 		
-		while(spColumnResultSet.next())
+		return new IngresCatalogCursor<>(this.dataSource, this.catalogQueries(jdbcConnection, sbColumns,
+			"table_name", "order by table_name, column_sequence", params, tableNames), "table_name",
+			result -> new ColumnRow(
+				trimmed(result, "column_name"),
+				((Number)result.getObject("column_ingdatatype")).intValue(),
+				trimmed(result, "column_datatype"),
+				((Number)result.getObject("column_length")).intValue(),
+				((Number)result.getObject("column_scale")).intValue(),
+				trimmed(result, "column_default_val"),
+				"Y".equals(trimmed(result, "column_nulls")),
+				identityColumn && "Y".equals(trimmed(result, "column_bydefault_ident"))));
+	}
+	
+	private IngresCatalogCursor<KeyRow> openPrimaryKeyCursor(
+		final JDBCConnection jdbcConnection,
+		final List<String> params,
+		final List<String> tableNames)
+	{
+		final String sbPrimaryKeys =
+			"select distinct k.schema_name, k.table_name, k.column_name, "
+				+ "k.key_position, k.constraint_name " +
+				"from iikeys k, iiconstraints c " +
+				"where c.constraint_type = 'P'  and k.constraint_name = c.constraint_name " +
+				"and k.schema_name=? ";
+		
+		return new IngresCatalogCursor<>(this.dataSource, this.catalogQueries(jdbcConnection, sbPrimaryKeys,
+			"k.table_name", "order by table_name, key_position", params, tableNames), "table_name",
+			result -> new KeyRow(trimmed(result, "constraint_name"), trimmed(result, "column_name")));
+	}
+	
+	private IngresCatalogCursor<IndexRow> openIndexCursor(
+		final JDBCConnection jdbcConnection,
+		final List<String> params,
+		final List<String> tableNames)
+	{
+		final String sbIndexes = "select idx.base_owner, idx.base_name, idx.unique_rule, " +
+			"idx.index_owner, idx.index_name, idc.key_sequence, idc.column_name, " +
+			"idc.sort_direction " +
+			"from iiindexes idx, iiindex_columns idc " +
+			"where idx.index_owner = idc.index_owner and idx.index_name = idc.index_name " +
+			"and idx.unique_rule = 'U' " + // fetch only
+			// unique
+			// indexes
+			"and idx.base_owner=? ";
+		
+		return new IngresCatalogCursor<>(this.dataSource, this.catalogQueries(jdbcConnection, sbIndexes,
+			"idx.base_name", "order by 2, 5, 6", params, tableNames), "base_name",
+			result -> new IndexRow(trimmed(result, "index_name"), trimmed(result, "column_name"),
+				"U".equals(trimmed(result, "unique_rule"))));
+	}
+	
+	private static String trimmed(final Result result, final String column) throws DBException
+	{
+		final String value = result.getString(column);
+		return value != null ? value.trim() : null;
+	}
+	
+	TableMetaData getTableMetaData(
+		final TableInfo table,
+		final int flags,
+		final List<ColumnRow> columnRows,
+		final List<KeyRow> primaryKeyRows,
+		final List<IndexRow> indexRows,
+		final Map<Object, Object> defaultValueMap)
+		throws Exception
+	{
+		final String tableName = table.getName();
+		final int columnCount = columnRows.size();
+		final ColumnMetaData[] columns = new ColumnMetaData[columnCount];
+		for(int i = 0; i < columnCount; i++)
 		{
+			final ColumnRow dataRow = columnRows.get(i);
+			final String columnName = dataRow.columnName;
+			final String caption = null;
 			
-			final int javaParamType = convToJavaType(
-				Math.abs(spColumnResultSet.getInt("param_datatype_code")),
-				spColumnResultSet.getInt("param_length"));
+			int ingresType = dataRow.ingresType;
+			if(ingresType != -1)
+			{
+				ingresType = Math.abs(ingresType);
+			}
+			else
+			{
+				ingresType = IngresTypeMapping.ingresType(dataRow.typeName);
+			}
 			
-			final DataType dataType = DataType.get(javaParamType);
-			final String procedureName = spColumnResultSet.getString(sqlProcedureName).trim();
+			int length = dataRow.length;
+			final int scale = dataRow.scale;
 			
-			final String paramName = spColumnResultSet.getString("param_name").trim();
-			boolean isInOut = false;
-			boolean isOut = false;
-			boolean isIn = false;
+			final DataType type = IngresTypeMapping.dataType(ingresType, length);
 			
-			if(spColumnResultSet.getString("param_input").equalsIgnoreCase("Y"))
+			final int colSize = IngresTypeMapping.columnSize(ingresType, length);
+			if(colSize >= 0)
 			{
-				isIn = true;
+				length = colSize;
 			}
-			else if(spColumnResultSet.getString("param_output").equalsIgnoreCase("Y"))
+			
+			final Object defaultValue = defaultValueMap.get(dataRow.defaultValue);
+			
+			columns[i] = new ColumnMetaData(tableName, columnName, caption, type, length, scale,
+				defaultValue, dataRow.nullable, dataRow.autoIncrement);
+		}
+		
+		final Map<IndexInfo, Set<String>> indexColumnMap = new LinkedHashMap<>();
+		final int rowCount = UNKNOWN_ROW_COUNT;
+		
+		if(table.getType() == TableType.TABLE
+			&& (flags & INDICES) != 0
+		)
+		{
+			final Set<String> pkColumns = new HashSet<>();
+			
+			if(primaryKeyRows != null && !primaryKeyRows.isEmpty())
 			{
-				isOut = true;
+				final String indexName = primaryKeyRows.get(0).constraintName;
+				for(final KeyRow pkRow : primaryKeyRows)
+				{
+					pkColumns.add(pkRow.columnName);
+				}
+				indexColumnMap
+					.put(new IndexInfo(indexName, IndexType.PRIMARY_KEY), pkColumns);
 			}
-			else if(spColumnResultSet.getString("param_inout").equalsIgnoreCase("Y"))
+			
+			if(indexRows != null)
 			{
-				isInOut = true;
+				for(final IndexRow indexRow : indexRows)
+				{
+					final String indexName = indexRow.indexName;
+					final String columnName = indexRow.columnName;
+					if(indexName != null
+						&& columnName != null
+						&& !pkColumns.contains(columnName)
+					)
+					{
+						final IndexInfo info = new IndexInfo(indexName, indexRow.unique ? IndexType.UNIQUE
+							: IndexType.NORMAL);
+						Set<String> columnNames = indexColumnMap.get(info);
+						if(columnNames == null)
+						{
+							columnNames = new HashSet<>();
+							indexColumnMap.put(info, columnNames);
+						}
+						columnNames.add(columnName);
+					}
+				}
 			}
-			
-			if(proceduresMap.get(procedureName) != null)
+		}
+		
+		final Index[] indices = new Index[indexColumnMap.size()];
+		int i = 0;
+		for(final IndexInfo indexInfo : indexColumnMap.keySet())
+		{
+			final Set<String> columnList = indexColumnMap.get(indexInfo);
+			final String[] indexColumns = columnList.toArray(new String[columnList.size()]);
+			indices[i++] = new Index(indexInfo.name, indexInfo.type, indexColumns);
+		}
+		
+		return new TableMetaData(table, columns, indices, rowCount);
+	}
+	
+	/**
+	 * Row of <code>iicolumns</code>.
+	 */
+	static final class ColumnRow
+	{
+		final String columnName;
+		final int ingresType;
+		final String typeName;
+		final int length;
+		final int scale;
+		final String defaultValue;
+		final boolean nullable;
+		final boolean autoIncrement;
+		
+		ColumnRow(
+			final String columnName, final int ingresType, final String typeName,
+			final int length, final int scale, final String defaultValue,
+			final boolean nullable, final boolean autoIncrement)
+		{
+			this.columnName = columnName;
+			this.ingresType = ingresType;
+			this.typeName = typeName;
+			this.length = length;
+			this.scale = scale;
+			this.defaultValue = defaultValue;
+			this.nullable = nullable;
+			this.autoIncrement = autoIncrement;
+		}
+	}
+	
+	/**
+	 * Column of a primary key.
+	 */
+	static final class KeyRow
+	{
+		final String constraintName;
+		final String columnName;
+		
+		KeyRow(final String constraintName, final String columnName)
+		{
+			this.constraintName = constraintName;
+			this.columnName = columnName;
+		}
+	}
+	
+	/**
+	 * Column of a secondary index.
+	 */
+	static final class IndexRow
+	{
+		final String indexName;
+		final String columnName;
+		final boolean unique;
+		
+		IndexRow(final String indexName, final String columnName, final boolean unique)
+		{
+			this.indexName = indexName;
+			this.columnName = columnName;
+			this.unique = unique;
+		}
+	}
+	
+	/**
+	 * Builds the model from the foreign keys of the requested tables. With the {@link IngresMetaDataCache} the
+	 * foreign keys are kept per table and only reloaded for tables whose foreign key constraints were created or
+	 * dropped since the last call.
+	 */
+	@Override
+	public EntityRelationshipModel getEntityRelationshipModel(
+		final ProgressMonitor monitor,
+		final TableInfo... tableInfos) throws DBException
+	{
+		monitor.beginTask("", ProgressMonitor.UNKNOWN);
+		monitor.setTaskName("");
+		
+		final EntityRelationshipModel model = new EntityRelationshipModel();
+		
+		final Set<String> tables = new HashSet<>();
+		for(final TableInfo table : tableInfos)
+		{
+			if(table.getType() == TableType.TABLE)
 			{
-				final Map<String, Object> map = generateStringObjectMap(dataType, paramName, isInOut, isOut, isIn);
-				
-				proceduresMap.get(procedureName).add(map);
+				tables.add(table.getName());
 			}
-			else
+		}
+		
+		if(!tables.isEmpty())
+		{
+			final IngresMetaDataCache cache = this.getIngresDataSource().getMetaDataCache();
+			try(final JDBCConnection jdbcConnection = (JDBCConnection)this.dataSource.openConnection())
 			{
-				final List<Map<String, Object>> list = new ArrayList<>();
+				final Collection<List<ForeignKey>> foreignKeys = cache != null
+					? this.loadForeignKeys(jdbcConnection, cache, tables)
+					: this.loadForeignKeys(jdbcConnection, tables).values();
 				
-				final Map<String, Object> map = generateStringObjectMap(dataType, paramName, isInOut, isOut, isIn);
+				for(final List<ForeignKey> tableForeignKeys : foreignKeys)
+				{
+					for(final ForeignKey foreignKey : tableForeignKeys)
+					{
+						if(tables.contains(foreignKey.getPkTable()))
+						{
+							model.add(foreignKey.toEntityRelationship());
+						}
+					}
+				}
+			}
+		}
+		
+		monitor.done();
+		
+		return model;
+	}
+	
+	/**
+	 * Reloads the foreign keys of those tables whose foreign key constraints differ from the cached ones and
+	 * takes the remaining tables from the cache.
+	 */
+	private Collection<List<ForeignKey>> loadForeignKeys(
+		final JDBCConnection jdbcConnection,
+		final IngresMetaDataCache cache,
+		final Set<String> tables) throws DBException
+	{
+		final Map<String, String> signatures = this.loadForeignKeySignatures(jdbcConnection, tables);
+		
+		final Map<String, List<ForeignKey>> foreignKeys = new LinkedHashMap<>();
+		final List<String> changed = new ArrayList<>();
+		for(final Map.Entry<String, String> entry : signatures.entrySet())
+		{
+			final List<ForeignKey> cached = cache.getForeignKeys(entry.getKey(), entry.getValue());
+			if(cached == null)
+			{
+				changed.add(entry.getKey());
+			}
+			foreignKeys.put(entry.getKey(), cached);
+		}
+		
+		if(!changed.isEmpty())
+		{
+			final Map<String, List<ForeignKey>> loaded = this.loadForeignKeys(jdbcConnection, new HashSet<>(changed));
+			for(final String table : changed)
+			{
+				final List<ForeignKey> tableForeignKeys = loaded.getOrDefault(table, Collections.emptyList());
+				cache.putForeignKeys(table, signatures.get(table), tableForeignKeys);
+				foreignKeys.put(table, tableForeignKeys);
+			}
+		}
+		
+		return foreignKeys.values();
+	}
+	
+	/**
+	 * Signatures of the foreign key constraints of the requested tables, built from constraint name and creation
+	 * date. Tables without foreign keys are left out.
+	 *
+	 * @return referencing table name -&gt; signature, in table name order
+	 */
+	private Map<String, String> loadForeignKeySignatures(
+		final JDBCConnection jdbcConnection,
+		final Set<String> tables) throws DBException
+	{
+		final Map<String, String> signatures = new LinkedHashMap<>();
+		
+		try(final Result result = this.catalogQuery(jdbcConnection,
+			"select distinct table_name, constraint_name, create_date from iiconstraints "
+				+ "where schema_name=? and constraint_type='R' "
+				+ "order by table_name, constraint_name",
+			this.dataSource.getUserName()))
+		{
+			while(result.next())
+			{
+				final String table = result.getString("table_name").trim();
+				if(tables.contains(table))
+				{
+					signatures.merge(table,
+						result.getString("constraint_name").trim() + "@" + result.getString("create_date"),
+						(first, second) -> first + ";" + second);
+				}
+			}
+		}
+		
+		return signatures;
+	}
+	
+	/**
+	 * Loads the foreign keys declared by <code>tables</code>. The tables are pushed down into the query as long as
+	 * they are a small part of the schema, see {@link #isFilteredCatalogQuery(JDBCConnection, int)}.
+	 *
+	 * @return referencing table name -&gt; foreign keys
+	 */
+	private Map<String, List<ForeignKey>> loadForeignKeys(
+		final JDBCConnection jdbcConnection,
+		final Set<String> tables) throws DBException
+	{
+		final String sbKeys = "select distinct p.schema_name, p.table_name, p.column_name, " +
+			"f.schema_name, f.table_name, f.column_name, f.key_position, " +
+			"f.constraint_name, p.constraint_name " +
+			"from iikeys p, iiconstraints c, " +
+			"iiref_constraints rc, iikeys f " +
+			"where c.constraint_type = 'R' and c.constraint_name = rc.ref_constraint_name " +
+			"and p.constraint_name = rc.unique_constraint_name " +
+			"and f.constraint_name = rc.ref_constraint_name " +
+			"and p.key_position = f.key_position and p.schema_name=? ";
+		
+		final List<String> params = new ArrayList<>();
+		params.add(this.dataSource.getUserName());
+		
+		final List<String> tableNames = this.isFilteredCatalogQuery(jdbcConnection, tables.size())
+			? new ArrayList<>(new TreeSet<>(tables))
+			: null;
+		
+		final Map<String, List<ForeignKey>> foreignKeys = new LinkedHashMap<>();
+		final List<String> pkColumns = new ArrayList<>();
+		final List<String> fkColumns = new ArrayList<>();
+		
+		// the columns of a constraint are adjacent, in key order
+		for(final IngresCatalogCursor.Query query : this.catalogQueries(jdbcConnection, sbKeys, "f.table_name",
+			"order by 4, 5, 8, 7", params, tableNames))
+		{
+			try(final Result rs = query.execute())
+			{
+				String constraint = null;
+				String pkTable = null;
+				String fkTable = null;
 				
-				list.add(map);
+				while(rs.next())
+				{
+					final String fkConstraint = rs.getString(7).trim();
+					if(!fkConstraint.equals(constraint))
+					{
+						addForeignKey(foreignKeys, tables, pkTable, fkTable, pkColumns, fkColumns);
+						constraint = fkConstraint;
+					}
+					
+					pkTable = rs.getString(1).trim();
+					fkTable = rs.getString(4).trim();
+					
+					pkColumns.add(rs.getString(2).trim());
+					fkColumns.add(rs.getString(5).trim());
+				}
 				
-				proceduresMap.put(procedureName, list);
+				addForeignKey(foreignKeys, tables, pkTable, fkTable, pkColumns, fkColumns);
 			}
 		}
 		
-		spColumnResultSet.close();
+		return foreignKeys;
+	}
+	
+	/**
+	 * Decides whether the catalog queries are restricted to the requested tables. That pays off as long as only a
+	 * small part of the schema is requested; for larger parts one scan of the whole schema is cheaper than many
+	 * <code>IN</code> lists.
+	 */
+	private boolean isFilteredCatalogQuery(final JDBCConnection jdbcConnection, final int tableCount)
+		throws DBException
+	{
+		if(tableCount > FILTERED_QUERY_MAX_TABLES)
+		{
+			return false;
+		}
+		
+		try(final Result result = this.catalogQuery(jdbcConnection,
+			"select count(*) from iitables where table_owner=? and table_name not like '$%'",
+			this.dataSource.getUserName()))
+		{
+			if(!result.next())
+			{
+				return false;
+			}
+			final long schemaTableCount = ((Number)result.getObject(0)).longValue();
+			return (long)tableCount * FILTERED_QUERY_RATIO < schemaTableCount;
+		}
+	}
+	
+	/**
+	 * @return the distinct table names in the order of the catalog cursors
+	 */
+	private List<String> getTableNames(final TableInfo[] tables)
+	{
+		final Set<String> names = new TreeSet<>();
+		for(final TableInfo table : tables)
+		{
+			names.add(table.getName());
+		}
+		return new ArrayList<>(names);
+	}
+	
+	/**
+	 * Runs a query on the system catalog and reports its duration to the {@link IngresMetricsListener}.
+	 */
+	private Result catalogQuery(final JDBCConnection jdbcConnection, final String sql, final Object... params)
+		throws DBException
+	{
+		final IngresMetricsListener metrics = this.getIngresDataSource().getMetricsListener();
+		if(!metrics.isEnabled())
+		{
+			return jdbcConnection.query(sql, params);
+		}
 		
-		this.addReturnParameters(proceduresMap, createStatement);
+		final long start = System.nanoTime();
+		final Result result = jdbcConnection.query(sql, params);
+		metrics.catalogQueryExecuted(sql, System.nanoTime() - start);
+		return result;
 	}
 	
-	private void addReturnParameters(
-		final Map<String, List<Map<String, Object>>> proceduresMap,
-		final Statement createStatement) throws SQLException
+	/**
+	 * Creates the queries of a catalog cursor, either one for the whole schema or, if <code>tableNames</code> is
+	 * given, one per batch of a <code>filterColumn IN (...)</code> list. The queries are only executed when the
+	 * cursor reaches them.
+	 *
+	 * @param select     the query up to and including the where clause
+	 * @param orderBy    the order by clause
+	 * @param tableNames the sorted table names, or <code>null</code>
+	 */
+	private List<IngresCatalogCursor.Query> catalogQueries(
+		final JDBCConnection jdbcConnection,
+		final String select,
+		final String filterColumn,
+		final String orderBy,
+		final List<String> params,
+		final List<String> tableNames)
 	{
-		final ResultSet resultTypeQuery = createStatement
-			.executeQuery(
-				"SELECT DISTINCT procedure_name,rescol_name,rescol_datatype_code,rescol_length FROM iiproc_rescols "
-					+ "WHERE rescol_name like 'result_column%'");
+		if(tableNames == null)
+		{
+			final String sql = select + orderBy;
+			return Collections.singletonList(() -> this.catalogQuery(jdbcConnection, sql, params.toArray()));
+		}
 		
-		String lastProcedureName = "";
+		final List<IngresCatalogCursor.Query> queries = new ArrayList<>();
+		for(int from = 0; from < tableNames.size(); from += FILTERED_QUERY_BATCH_SIZE)
+		{
+			final List<String> batch = tableNames.subList(from,
+				Math.min(from + FILTERED_QUERY_BATCH_SIZE, tableNames.size()));
+			
+			final StringBuilder sql = new StringBuilder(select).append("and ").append(filterColumn).append(" in (");
+			for(int i = 0; i < batch.size(); i++)
+			{
+				sql.append(i == 0 ? "?" : ",?");
+			}
+			sql.append(") ").append(orderBy);
+			
+			final List<Object> batchParams = new ArrayList<>(params.size() + batch.size());
+			batchParams.addAll(params);
+			batchParams.addAll(batch);
+			
+			final String batchSql = sql.toString();
+			queries.add(() -> this.catalogQuery(jdbcConnection, batchSql, batchParams.toArray()));
+		}
+		return queries;
+	}
+	
+	@Override
+	public StoredProcedure[] getStoredProcedures(final ProgressMonitor monitor) throws DBException
+	{
+		monitor.beginTask("", ProgressMonitor.UNKNOWN);
 		
-		final Map<String, Map<String, Object>> tempMap = new HashMap<>();
+		final List<StoredProcedure> storedProcedures = new ArrayList<>();
 		
-		while(resultTypeQuery.next())
+		try
 		{
-			final String procedure_name = resultTypeQuery.getString("procedure_name").trim();
+			final ConnectionProvider connectionProvider = this.dataSource.getConnectionProvider();
 			
-			if(!lastProcedureName.equalsIgnoreCase(procedure_name))
+			try(final Connection connection = connectionProvider.getConnection())
 			{
+				final Map<String, ProcedureColumns> procedures = loadProcedureColumns(connection, null);
 				
-				final int ifx_rescol_code = resultTypeQuery.getInt("rescol_datatype_code");
-				final int ifx_rescol_length = resultTypeQuery.getInt("rescol_length");
-				
-				final int convToJavaType = convToJavaType(Math.abs(ifx_rescol_code), ifx_rescol_length);
-				
-				final DataType dataType = DataType.get(convToJavaType);
-				
-				final Map<String, Object> map = new HashMap<>();
-				map.put("PARAM_NAME", "RESULT_TYPE");
-				map.put("DATA_TYPE", dataType);
-				map.put("RETURN_TYPE_FLAVOR", ReturnTypeFlavor.TYPE);
-				
-				tempMap.put(procedure_name, map);
-				lastProcedureName = procedure_name;
+				// catalog and schema only works with null
+				// see #13485
+				try(final ResultSet rs = connection.getMetaData().getProcedures(null, null, null))
+				{
+					while(rs.next() && !monitor.isCanceled())
+					{
+						storedProcedures.add(createStoredProcedure(rs.getString("PROCEDURE_NAME"),
+							rs.getString("REMARKS"), procedures));
+					}
+				}
 			}
-			else
+		}
+		catch(final SQLException e)
+		{
+			throw new DBException(this.dataSource, e);
+		}
+		
+		monitor.done();
+		
+		return storedProcedures.toArray(new StoredProcedure[storedProcedures.size()]);
+	}
+	
+	/**
+	 * Looks up a single stored procedure, reading only the catalog rows of this procedure. With the
+	 * {@link IngresMetaDataCache} the procedure is kept until it is dropped or recreated.
+	 *
+	 * @return the procedure or <code>null</code> if it does not exist
+	 */
+	public StoredProcedure getStoredProcedure(final String name) throws DBException
+	{
+		final IngresMetaDataCache cache = this.getIngresDataSource().getMetaDataCache();
+		
+		try(final Connection connection = this.dataSource.getConnectionProvider().getConnection())
+		{
+			String signature = null;
+			if(cache != null)
 			{
-				
-				if(tempMap.get(procedure_name).containsValue(ReturnTypeFlavor.RESULT_SET))
+				signature = loadProcedureSignature(connection, name);
+				if(signature == null)
 				{
-					break;
+					return null;
 				}
 				
-				tempMap.get(procedure_name).put("RETURN_TYPE_FLAVOR", ReturnTypeFlavor.RESULT_SET);
-				tempMap.get(procedure_name).put("DATA_TYPE", null);
+				final StoredProcedure cached = cache.getStoredProcedure(name, signature);
+				if(cached != null)
+				{
+					return cached;
+				}
 			}
+			
+			final Map<String, ProcedureColumns> procedures = loadProcedureColumns(connection, name);
+			
+			StoredProcedure storedProcedure = null;
+			// the name is a pattern for getProcedures
+			try(final ResultSet rs = connection.getMetaData().getProcedures(null, null, name))
+			{
+				while(storedProcedure == null && rs.next())
+				{
+					if(name.equals(rs.getString("PROCEDURE_NAME")))
+					{
+						storedProcedure = createStoredProcedure(name, rs.getString("REMARKS"), procedures);
+					}
+				}
+			}
+			
+			if(storedProcedure != null && cache != null)
+			{
+				cache.putStoredProcedure(name, signature, storedProcedure);
+			}
+			return storedProcedure;
+		}
+		catch(final SQLException e)
+		{
+			throw new DBException(this.dataSource, e);
+		}
+	}
+	
+	private static StoredProcedure createStoredProcedure(
+		final String name,
+		final String description,
+		final Map<String, ProcedureColumns> procedures)
+	{
+		final ProcedureColumns columns = name != null ? procedures.get(name) : null;
+		if(columns == null)
+		{
+			return new StoredProcedure(ReturnTypeFlavor.VOID, null, name, description, new Param[0]);
 		}
-		for(final String key : tempMap.keySet())
+		return new StoredProcedure(
+			columns.returnTypeFlavor,
+			columns.returnType,
+			name,
+			description,
+			columns.params.toArray(new Param[columns.params.size()])
+		);
+	}
+	
+	/**
+	 * @return owner and creation date of the procedure, or <code>null</code> if it does not exist
+	 */
+	private static String loadProcedureSignature(final Connection connection, final String procedureName)
+		throws SQLException
+	{
+		String signature = null;
+		try(final PreparedStatement statement = prepareProcedureQuery(connection,
+			"SELECT DISTINCT procedure_owner, create_date FROM iiprocedures WHERE procedure_name=? order by 1",
+			procedureName);
+			final ResultSet rs = statement.executeQuery())
 		{
-			if(proceduresMap.containsKey(key))
+			while(rs.next())
 			{
-				proceduresMap.get(key).add(tempMap.get(key));
+				final String owner = rs.getString("procedure_owner").trim() + "@" + rs.getString("create_date");
+				signature = signature == null ? owner : signature + ";" + owner;
+			}
+		}
+		return signature;
+	}
+	
+	/**
+	 * @param procedureName the procedure to load, or <code>null</code> for all procedures
+	 * @return procedure name -&gt; parameters and result type
+	 */
+	private static Map<String, ProcedureColumns> loadProcedureColumns(
+		final Connection connection,
+		final String procedureName) throws SQLException
+	{
+		final Map<String, ProcedureColumns> procedures = new HashMap<>();
+		
+		try
+		{
+			addProcedureParams(procedures, connection, procedureName, "iiproc_params", "procedure_owner",
+				"procedure_name");
+		}
+		catch(final SQLSyntaxErrorException e)
+		{
+			if(e.getSQLState().equals(4205))
+			{
+				// just in case the catalog iiproc_params does not exist try the
+				// catalog iigwprocparams and use proc_name instead of
+				// procedure_name.
+				// Found in Ingres Jdbc driver but is never used there.
+				addProcedureParams(procedures, connection, procedureName, "iigwprocparams", "proc_owner",
+					"proc_name");
 			}
 			else
 			{
-				final List<Map<String, Object>> list = new ArrayList<>();
-				list.add(tempMap.get(key));
-				proceduresMap.put(key, list);
+				throw e;
+			}
+		}
+		
+		addReturnTypes(procedures, connection, procedureName);
+		
+		return procedures;
+	}
+	
+	private static void addProcedureParams(
+		final Map<String, ProcedureColumns> procedures,
+		final Connection connection,
+		final String procedureName,
+		final String catalog,
+		final String ownerColumn,
+		final String nameColumn) throws SQLException
+	{
+		final String sql = "SELECT DISTINCT param_datatype_code," + nameColumn
+			+ ",param_input,param_output,param_inout, param_name,param_length FROM " + catalog
+			+ (procedureName != null ? " WHERE " + nameColumn + "=?" : "")
+			+ " order by " + ownerColumn + ", " + nameColumn + ", param_sequence";
+		
+		try(final PreparedStatement statement = prepareProcedureQuery(connection, sql, procedureName);
+			final ResultSet rs = statement.executeQuery())
+		{
+			while(rs.next())
+			{
+				final ParamType paramType;
+				if(rs.getString("param_input").equalsIgnoreCase("Y"))
+				{
+					paramType = ParamType.IN;
+				}
+				else if(rs.getString("param_output").equalsIgnoreCase("Y"))
+				{
+					paramType = ParamType.OUT;
+				}
+				else if(rs.getString("param_inout").equalsIgnoreCase("Y"))
+				{
+					paramType = ParamType.IN_OUT;
+				}
+				else
+				{
+					continue;
+				}
+				
+				final DataType dataType = IngresTypeMapping.dataType(Math.abs(rs.getInt("param_datatype_code")),
+					rs.getInt("param_length"));
+				
+				procedures.computeIfAbsent(rs.getString(nameColumn).trim(), name -> new ProcedureColumns()).params
+					.add(new Param(paramType, rs.getString("param_name").trim(), dataType));
+			}
+		}
+	}
+	
+	/**
+	 * A procedure with one result column returns that type, with more columns it returns a result set.
+	 */
+	private static void addReturnTypes(
+		final Map<String, ProcedureColumns> procedures,
+		final Connection connection,
+		final String procedureName) throws SQLException
+	{
+		final String sql = "SELECT DISTINCT procedure_name,rescol_name,rescol_datatype_code,rescol_length "
+			+ "FROM iiproc_rescols WHERE rescol_name like 'result_column%'"
+			+ (procedureName != null ? " AND procedure_name=?" : "");
+		
+		try(final PreparedStatement statement = prepareProcedureQuery(connection, sql, procedureName);
+			final ResultSet rs = statement.executeQuery())
+		{
+			while(rs.next())
+			{
+				final ProcedureColumns columns = procedures.computeIfAbsent(rs.getString("procedure_name").trim(),
+					name -> new ProcedureColumns());
+				
+				if(columns.returnTypeFlavor == ReturnTypeFlavor.VOID)
+				{
+					columns.returnTypeFlavor = ReturnTypeFlavor.TYPE;
+					columns.returnType = IngresTypeMapping.dataType(Math.abs(rs.getInt("rescol_datatype_code")),
+						rs.getInt("rescol_length"));
+				}
+				else
+				{
+					columns.returnTypeFlavor = ReturnTypeFlavor.RESULT_SET;
+					columns.returnType = null;
+				}
 			}
 		}
-		resultTypeQuery.close();
+	}
+	
+	private static PreparedStatement prepareProcedureQuery(
+		final Connection connection,
+		final String sql,
+		final String procedureName) throws SQLException
+	{
+		final PreparedStatement statement = connection.prepareStatement(sql);
+		if(procedureName != null)
+		{
+			statement.setString(1, procedureName);
+		}
+		return statement;
+	}
+	
+	/**
+	 * Parameters and result type of a stored procedure.
+	 */
+	private static final class ProcedureColumns
+	{
+		final List<Param> params = new ArrayList<>();
+		ReturnTypeFlavor returnTypeFlavor = ReturnTypeFlavor.VOID;
+		DataType returnType;
 	}
 	
 	@Override
@@ -0,0 +1,452 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.xdev.jadoth.sqlengine.exceptions.SQLEngineException;
+import com.xdev.jadoth.sqlengine.interfaces.ConnectionProvider;
+import com.xdev.jadoth.sqlengine.internal.tables.SqlTableIdentity;
+
+import xdev.util.ProgressMonitor;
+
+
+/**
+ * Maintenance statements for Ingres tables, run on connections of a {@link ConnectionProvider}.
+ * <p>
+ * Optimizer statistics are refreshed with <code>CREATE STATISTICS</code>, the SQL counterpart of
+ * <code>optimizedb</code>, so query plans stay good after bulk loads without a DBA running the utility. Tables
+ * and their secondary indices are rebuilt with <code>MODIFY ... TO RECONSTRUCT</code>, which keeps the storage
+ * structure and removes overflow pages.
+ */
+public class IngresMaintenance
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// constants //
+	// ///////////////////
+	
+	/**
+	 * Tables per <code>CREATE STATISTICS</code> statement of
+	 * {@link #updateStatistics(Collection, int)}.
+	 */
+	protected static final int STATISTICS_BATCH_SIZE = 50;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final ConnectionProvider<IngresDbms> connectionProvider;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////////
+	
+	public IngresMaintenance(final ConnectionProvider<IngresDbms> connectionProvider)
+	{
+		this.connectionProvider = connectionProvider;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// static methods //
+	// ///////////////////
+	
+	/**
+	 * Appends <code>table</code> with its optional column list to a <code>CREATE STATISTICS FOR</code> clause.
+	 */
+	static StringBuilder assembleStatisticsTarget(
+		final SqlTableIdentity table, final String[] columnNames,
+		final char delimiter, final StringBuilder sb)
+	{
+		assembleTableName(table, delimiter, sb);
+		if(columnNames != null && columnNames.length > 0)
+		{
+			sb.append(" (");
+			for(int i = 0; i < columnNames.length; i++)
+			{
+				if(i > 0)
+				{
+					sb.append(", ");
+				}
+				sb.append(delimiter).append(columnNames[i]).append(delimiter);
+			}
+			sb.append(')');
+		}
+		return sb;
+	}
+	
+	static StringBuilder assembleTableName(
+		final SqlTableIdentity table, final char delimiter,
+		final StringBuilder sb)
+	{
+		final SqlTableIdentity.Sql sql = table.sql();
+		if(sql.schema != null)
+		{
+			sb.append(delimiter).append(sql.schema).append(delimiter).append('.');
+		}
+		return sb.append(delimiter).append(sql.name).append(delimiter);
+	}
+	
+	/**
+	 * Splits a table name of the form <code>[schema.]table</code>, either part optionally delimited. Undelimited
+	 * parts are folded to lower case, the case regular identifiers are stored with in the catalog.
+	 */
+	static String[] parseQualifiedName(final String qualifiedName, final char delimiter)
+	{
+		final String name = qualifiedName.trim();
+		int dot = -1;
+		boolean delimited = false;
+		for(int i = 0; i < name.length(); i++)
+		{
+			final char ch = name.charAt(i);
+			if(ch == delimiter)
+			{
+				delimited = !delimited;
+			}
+			else if(ch == '.' && !delimited)
+			{
+				dot = i;
+				break;
+			}
+		}
+		return new String[]{
+			dot < 0 ? null : unquote(name.substring(0, dot), delimiter),
+			unquote(name.substring(dot + 1), delimiter)
+		};
+	}
+	
+	private static String unquote(final String identifier, final char delimiter)
+	{
+		final String trimmed = identifier.trim();
+		if(trimmed.length() >= 2 && trimmed.charAt(0) == delimiter
+			&& trimmed.charAt(trimmed.length() - 1) == delimiter)
+		{
+			return trimmed.substring(1, trimmed.length() - 1);
+		}
+		return trimmed.toLowerCase(Locale.ROOT);
+	}
+	
+	private static String assembleReconstruct(final String schema, final String name, final char delimiter)
+	{
+		final StringBuilder sb = new StringBuilder(64).append("MODIFY ");
+		if(schema != null)
+		{
+			sb.append(delimiter).append(schema).append(delimiter).append('.');
+		}
+		return sb.append(delimiter).append(name).append(delimiter).append(" TO RECONSTRUCT").toString();
+	}
+	
+	private static void beginTask(final ProgressMonitor monitor, final int totalWork)
+	{
+		if(monitor != null)
+		{
+			monitor.beginTask("", totalWork);
+		}
+	}
+	
+	private static boolean isCanceled(final ProgressMonitor monitor)
+	{
+		if(monitor == null)
+		{
+			return false;
+		}
+		synchronized(monitor)
+		{
+			return monitor.isCanceled();
+		}
+	}
+	
+	private static void startWork(final ProgressMonitor monitor, final String taskName)
+	{
+		if(monitor != null)
+		{
+			synchronized(monitor)
+			{
+				monitor.setTaskName(taskName);
+			}
+		}
+	}
+	
+	private static void worked(final ProgressMonitor monitor)
+	{
+		if(monitor != null)
+		{
+			synchronized(monitor)
+			{
+				monitor.worked(1);
+			}
+		}
+	}
+	
+	private static StringBuilder assembleSample(final int samplePercent, final StringBuilder sb)
+	{
+		if(samplePercent > 0 && samplePercent < 100)
+		{
+			sb.append(" WITH SAMPLE = ").append(samplePercent);
+		}
+		return sb;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	/**
+	 * Refreshes the optimizer statistics of <code>table</code>.
+	 *
+	 * @param samplePercent percentage of rows sampled, 0 or 100 read all rows
+	 * @param columnNames   columns to build histograms for, none for all columns
+	 * @return the executed statement
+	 */
+	public String updateStatistics(
+		final SqlTableIdentity table, final int samplePercent,
+		final String... columnNames) throws SQLEngineException
+	{
+		final StringBuilder sb = new StringBuilder(128).append("CREATE STATISTICS FOR ");
+		assembleStatisticsTarget(table, columnNames, this.getIdentifierDelimiter(), sb);
+		final String sql = assembleSample(samplePercent, sb).toString();
+		this.execute(sql);
+		return sql;
+	}
+	
+	/**
+	 * Refreshes the optimizer statistics of all columns of <code>tables</code>, with one statement per
+	 * {@link #STATISTICS_BATCH_SIZE} tables.
+	 *
+	 * @param samplePercent percentage of rows sampled, 0 or 100 read all rows
+	 * @return the executed statements
+	 */
+	public List<String> updateStatistics(
+		final Collection<? extends SqlTableIdentity> tables,
+		final int samplePercent) throws SQLEngineException
+	{
+		final char delimiter = this.getIdentifierDelimiter();
+		final List<String> statements = new ArrayList<>();
+		StringBuilder sb = null;
+		int count = 0;
+		for(final SqlTableIdentity table : tables)
+		{
+			if(sb == null)
+			{
+				sb = new StringBuilder(1024).append("CREATE STATISTICS FOR ");
+			}
+			else
+			{
+				sb.append(", ");
+			}
+			assembleStatisticsTarget(table, null, delimiter, sb);
+			
+			if(++count == STATISTICS_BATCH_SIZE)
+			{
+				statements.add(assembleSample(samplePercent, sb).toString());
+				sb = null;
+				count = 0;
+			}
+		}
+		if(sb != null)
+		{
+			statements.add(assembleSample(samplePercent, sb).toString());
+		}
+		
+		this.execute(statements.toArray(new String[statements.size()]));
+		return statements;
+	}
+	
+	/**
+	 * Rebuilds <code>tables</code> and their secondary indices with <code>MODIFY ... TO RECONSTRUCT</code>.
+	 * <p>
+	 * Every table is handled on a connection of its own: first the base table, then its secondary indices one after
+	 * another, because rebuilding an index locks its base table as well. Up to <code>parallelism</code> tables are
+	 * rebuilt at the same time. Tables not yet started are skipped once the monitor is canceled.
+	 *
+	 * @param monitor     receives one unit of work per rebuilt table or index, may be <code>null</code>
+	 * @param parallelism number of tables rebuilt concurrently, each on its own connection
+	 * @param tableNames  names of the form <code>[schema.]table</code>
+	 * @return the number of rebuilt tables and indices
+	 */
+	public int rebuildIndices(
+		final ProgressMonitor monitor, final int parallelism,
+		final String... tableNames) throws SQLEngineException
+	{
+		final char delimiter = this.getIdentifierDelimiter();
+		final List<List<String>> work = this.loadReconstructStatements(tableNames, delimiter);
+		
+		int totalWork = 0;
+		for(final List<String> statements : work)
+		{
+			totalWork += statements.size();
+		}
+		beginTask(monitor, totalWork);
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(
+			Math.max(1, Math.min(parallelism, work.size())));
+		try
+		{
+			final List<Future<Integer>> futures = new ArrayList<>(work.size());
+			for(final List<String> statements : work)
+			{
+				futures.add(executor.submit(() -> this.reconstruct(monitor, statements)));
+			}
+			
+			int rebuilt = 0;
+			for(final Future<Integer> future : futures)
+			{
+				rebuilt += future.get();
+			}
+			return rebuilt;
+		}
+		catch(final ExecutionException e)
+		{
+			final Throwable cause = e.getCause();
+			throw cause instanceof SQLEngineException ? (SQLEngineException)cause : new SQLEngineException(cause);
+		}
+		catch(final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLEngineException(e);
+		}
+		finally
+		{
+			executor.shutdownNow();
+			if(monitor != null)
+			{
+				monitor.done();
+			}
+		}
+	}
+	
+	/**
+	 * @return per table the <code>MODIFY</code> statements of the table and its secondary indices
+	 */
+	private List<List<String>> loadReconstructStatements(final String[] tableNames, final char delimiter)
+		throws SQLEngineException
+	{
+		final List<List<String>> work = new ArrayList<>(tableNames.length);
+		try(final Connection connection = this.connectionProvider.getConnection();
+			final PreparedStatement unqualified = connection.prepareStatement(
+				"SELECT index_owner, index_name FROM iiindexes WHERE base_name = ? "
+					+ "AND base_owner = dbmsinfo('username') ORDER BY index_name");
+			final PreparedStatement qualified = connection.prepareStatement(
+				"SELECT index_owner, index_name FROM iiindexes WHERE base_name = ? AND base_owner = ? "
+					+ "ORDER BY index_name"))
+		{
+			for(final String tableName : tableNames)
+			{
+				final String[] name = parseQualifiedName(tableName, delimiter);
+				final List<String> statements = new ArrayList<>();
+				statements.add(assembleReconstruct(name[0], name[1], delimiter));
+				
+				final PreparedStatement select = name[0] != null ? qualified : unqualified;
+				select.setString(1, name[1]);
+				if(name[0] != null)
+				{
+					select.setString(2, name[0]);
+				}
+				try(final ResultSet resultSet = select.executeQuery())
+				{
+					while(resultSet.next())
+					{
+						statements.add(assembleReconstruct(resultSet.getString(1).trim(),
+							resultSet.getString(2).trim(), delimiter));
+					}
+				}
+				work.add(statements);
+			}
+		}
+		catch(final SQLException e)
+		{
+			throw new SQLEngineException(e);
+		}
+		return work;
+	}
+	
+	private int reconstruct(final ProgressMonitor monitor, final List<String> statements)
+		throws SQLEngineException
+	{
+		if(isCanceled(monitor))
+		{
+			return 0;
+		}
+		
+		int rebuilt = 0;
+		try(final Connection connection = this.connectionProvider.getConnection();
+			final Statement statement = connection.createStatement())
+		{
+			for(final String sql : statements)
+			{
+				startWork(monitor, sql);
+				statement.execute(sql);
+				if(!connection.getAutoCommit())
+				{
+					connection.commit();
+				}
+				rebuilt++;
+				worked(monitor);
+			}
+		}
+		catch(final SQLException e)
+		{
+			throw new SQLEngineException(e);
+		}
+		return rebuilt;
+	}
+	
+	protected char getIdentifierDelimiter()
+	{
+		return this.connectionProvider.getDbmsAdaptor().getIdentifierDelimiter();
+	}
+	
+	/**
+	 * Executes <code>statements</code> in order on one connection.
+	 */
+	protected void execute(final String... statements) throws SQLEngineException
+	{
+		if(statements.length == 0)
+		{
+			return;
+		}
+		
+		try(final Connection connection = this.connectionProvider.getConnection();
+			final Statement statement = connection.createStatement())
+		{
+			for(final String sql : statements)
+			{
+				statement.execute(sql);
+			}
+			if(!connection.getAutoCommit())
+			{
+				connection.commit();
+			}
+		}
+		catch(final SQLException e)
+		{
+			throw new SQLEngineException(e);
+		}
+	}
+}
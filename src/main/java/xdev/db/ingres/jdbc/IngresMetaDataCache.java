@@ -0,0 +1,361 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import xdev.db.DBMetaData.TableInfo;
+import xdev.db.DBMetaData.TableMetaData;
+import xdev.db.DBMetaData.TableType;
+import xdev.db.StoredProcedure;
+import xdev.vt.Cardinality;
+import xdev.vt.EntityRelationship;
+import xdev.vt.EntityRelationship.Entity;
+
+
+/**
+ * Metadata cache of an {@link IngresJDBCDataSource}.
+ * <p>
+ * Entries are validated against a catalog stamp, a single row of aggregates (<code>count(*)</code>,
+ * <code>max(create_date)</code>, <code>max(alter_date)</code>, ...) over <code>iitables</code> and
+ * <code>iiindexes</code>, see {@link IngresJDBCMetaData}. While the stamp is unchanged the entries are served
+ * without further probes. Table metadata additionally remembers the signature of its table, derived from
+ * <code>iitables</code> (<code>table_reltid</code>, <code>alter_date</code>, <code>modify_date</code>) and the
+ * secondary indexes of the table. After the stamp has changed, only the signatures of the requested tables are
+ * read to decide which of them have to be reloaded.
+ * <p>
+ * Foreign keys are kept per referencing table. Their signature is built from the names and creation dates of the
+ * table's foreign key constraints in <code>iiconstraints</code>, so the entity relationship model is only reloaded
+ * for tables whose constraints were created or dropped.
+ * <p>
+ * Stored procedures are kept by name, signed with owner and creation date from <code>iiprocedures</code>.
+ */
+public class IngresMetaDataCache
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	// guarded by this
+	private final Map<EnumSet<TableType>, TableInfosEntry> tableInfos = new HashMap<>();
+	private final Map<TableKey, TableMetaDataEntry> tableMetaData = new HashMap<>();
+	private final Map<String, ForeignKeysEntry> foreignKeys = new HashMap<>();
+	private final Map<String, StoredProcedureEntry> storedProcedures = new HashMap<>();
+	
+	private long hitCount;
+	private long missCount;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	/**
+	 * @param stamp current catalog stamp of the listed tables
+	 * @return a copy of the cached table infos, or <code>null</code> if the catalog has changed since
+	 */
+	public synchronized TableInfo[] getTableInfos(
+		final EnumSet<TableType> types,
+		final String stamp)
+	{
+		final TableInfosEntry entry = this.tableInfos.get(types);
+		if(entry != null && entry.stamp.equals(stamp))
+		{
+			this.hitCount++;
+			return entry.tables.clone();
+		}
+		this.missCount++;
+		return null;
+	}
+	
+	public synchronized void putTableInfos(
+		final EnumSet<TableType> types,
+		final String stamp,
+		final TableInfo[] tables)
+	{
+		this.tableInfos.put(EnumSet.copyOf(types), new TableInfosEntry(stamp, tables.clone()));
+	}
+	
+	/**
+	 * @param stamp current catalog stamp of the schema
+	 * @return the cached metadata or <code>null</code> if it is missing or the catalog has changed since it was
+	 *         last validated, see {@link #revalidateTableMetaData(String, int, String, String)}
+	 */
+	public synchronized TableMetaData getTableMetaData(
+		final String tableName, final int flags,
+		final String stamp)
+	{
+		final TableMetaDataEntry entry = this.tableMetaData.get(new TableKey(tableName, flags));
+		if(entry != null && entry.stamp.equals(stamp))
+		{
+			this.hitCount++;
+			return entry.metaData;
+		}
+		return null;
+	}
+	
+	/**
+	 * Validates the cached metadata against the current signature of its table. A valid entry is served for
+	 * <code>stamp</code> from now on.
+	 *
+	 * @param signature current catalog signature of the table
+	 * @param stamp     current catalog stamp of the schema
+	 * @return the cached metadata or <code>null</code> if it is missing or outdated
+	 */
+	public synchronized TableMetaData revalidateTableMetaData(
+		final String tableName, final int flags,
+		final String signature, final String stamp)
+	{
+		final TableMetaDataEntry entry = this.tableMetaData.get(new TableKey(tableName, flags));
+		if(entry != null && Objects.equals(entry.signature, signature))
+		{
+			this.hitCount++;
+			entry.stamp = stamp;
+			return entry.metaData;
+		}
+		this.missCount++;
+		return null;
+	}
+	
+	public synchronized void putTableMetaData(
+		final String tableName, final int flags,
+		final String signature, final String stamp,
+		final TableMetaData metaData)
+	{
+		this.tableMetaData.put(new TableKey(tableName, flags), new TableMetaDataEntry(signature, stamp, metaData));
+	}
+	
+	/**
+	 * @param tableName name of the referencing table
+	 * @param signature current signature of the table's foreign key constraints
+	 * @return the cached foreign keys or <code>null</code> if they are missing or outdated
+	 */
+	public synchronized List<ForeignKey> getForeignKeys(final String tableName, final String signature)
+	{
+		final ForeignKeysEntry entry = this.foreignKeys.get(tableName);
+		if(entry != null && entry.signature.equals(signature))
+		{
+			this.hitCount++;
+			return entry.foreignKeys;
+		}
+		this.missCount++;
+		return null;
+	}
+	
+	public synchronized void putForeignKeys(
+		final String tableName, final String signature,
+		final List<ForeignKey> foreignKeys)
+	{
+		this.foreignKeys.put(tableName, new ForeignKeysEntry(signature, foreignKeys));
+	}
+	
+	/**
+	 * @param signature current signature of the procedure
+	 * @return the cached procedure or <code>null</code> if it is missing or outdated
+	 */
+	public synchronized StoredProcedure getStoredProcedure(final String name, final String signature)
+	{
+		final StoredProcedureEntry entry = this.storedProcedures.get(name);
+		if(entry != null && entry.signature.equals(signature))
+		{
+			this.hitCount++;
+			return entry.storedProcedure;
+		}
+		this.missCount++;
+		return null;
+	}
+	
+	public synchronized void putStoredProcedure(
+		final String name, final String signature,
+		final StoredProcedure storedProcedure)
+	{
+		this.storedProcedures.put(name, new StoredProcedureEntry(signature, storedProcedure));
+	}
+	
+	/**
+	 * Drops everything cached for <code>tableName</code>, including all table lists and all foreign keys
+	 * referencing it. Called for tables created by the adapter; tables altered by the application should be
+	 * invalidated as well, because the catalog stamps only change once per second.
+	 */
+	public synchronized void invalidate(final String tableName)
+	{
+		this.tableInfos.clear();
+		this.tableMetaData.keySet().removeIf(key -> key.tableName.equals(tableName));
+		this.foreignKeys.remove(tableName);
+		this.foreignKeys.values().removeIf(entry -> entry.references(tableName));
+	}
+	
+	public synchronized void clear()
+	{
+		this.tableInfos.clear();
+		this.tableMetaData.clear();
+		this.foreignKeys.clear();
+		this.storedProcedures.clear();
+	}
+	
+	public synchronized long getHitCount()
+	{
+		return this.hitCount;
+	}
+	
+	public synchronized long getMissCount()
+	{
+		return this.missCount;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// member types //
+	// ///////////////////
+	
+	private static final class TableInfosEntry
+	{
+		final String stamp;
+		final TableInfo[] tables;
+		
+		TableInfosEntry(final String stamp, final TableInfo[] tables)
+		{
+			this.stamp = stamp;
+			this.tables = tables;
+		}
+	}
+	
+	private static final class TableMetaDataEntry
+	{
+		final String signature;
+		final TableMetaData metaData;
+		// stamp of the last validation, guarded by the cache
+		String stamp;
+		
+		TableMetaDataEntry(final String signature, final String stamp, final TableMetaData metaData)
+		{
+			this.signature = signature;
+			this.stamp = stamp;
+			this.metaData = metaData;
+		}
+	}
+	
+	/**
+	 * Foreign key constraint between two tables of the schema.
+	 */
+	public static final class ForeignKey
+	{
+		private final String pkTable;
+		private final String fkTable;
+		private final String[] pkColumns;
+		private final String[] fkColumns;
+		
+		public ForeignKey(
+			final String pkTable, final String fkTable,
+			final String[] pkColumns, final String[] fkColumns)
+		{
+			this.pkTable = pkTable;
+			this.fkTable = fkTable;
+			this.pkColumns = pkColumns;
+			this.fkColumns = fkColumns;
+		}
+		
+		public String getPkTable()
+		{
+			return this.pkTable;
+		}
+		
+		public String getFkTable()
+		{
+			return this.fkTable;
+		}
+		
+		public EntityRelationship toEntityRelationship()
+		{
+			return new EntityRelationship(
+				new Entity(this.pkTable, this.pkColumns.clone(), Cardinality.ONE),
+				new Entity(this.fkTable, this.fkColumns.clone(), Cardinality.MANY));
+		}
+	}
+	
+	private static final class ForeignKeysEntry
+	{
+		final String signature;
+		final List<ForeignKey> foreignKeys;
+		
+		ForeignKeysEntry(final String signature, final List<ForeignKey> foreignKeys)
+		{
+			this.signature = signature;
+			this.foreignKeys = foreignKeys;
+		}
+		
+		boolean references(final String tableName)
+		{
+			for(final ForeignKey foreignKey : this.foreignKeys)
+			{
+				if(foreignKey.pkTable.equals(tableName))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+	
+	private static final class StoredProcedureEntry
+	{
+		final String signature;
+		final StoredProcedure storedProcedure;
+		
+		StoredProcedureEntry(final String signature, final StoredProcedure storedProcedure)
+		{
+			this.signature = signature;
+			this.storedProcedure = storedProcedure;
+		}
+	}
+	
+	private static final class TableKey
+	{
+		final String tableName;
+		final int flags;
+		
+		TableKey(final String tableName, final int flags)
+		{
+			this.tableName = tableName;
+			this.flags = flags;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return 31 * this.tableName.hashCode() + this.flags;
+		}
+		
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if(this == obj)
+			{
+				return true;
+			}
+			if(!(obj instanceof TableKey))
+			{
+				return false;
+			}
+			final TableKey other = (TableKey)obj;
+			return this.flags == other.flags && this.tableName.equals(other.tableName);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+
+/**
+ * Receives timings and counts from the Ingres adapter. All durations are in nanoseconds.
+ * <p>
+ * The listener is registered with {@link IngresDbms#setMetricsListener(IngresMetricsListener)}. As long as
+ * {@link #isEnabled()} returns <code>false</code> no timestamps are taken and connections are not wrapped, so
+ * {@link #NOOP} costs nothing. Implementations are called from many threads at once and must not block.
+ *
+ * @see IngresHistogramMetrics
+ */
+public interface IngresMetricsListener
+{
+	/**
+	 * Listener which ignores everything, the default.
+	 */
+	IngresMetricsListener NOOP = new IngresMetricsListener()
+	{
+		@Override
+		public boolean isEnabled()
+		{
+			return false;
+		}
+		
+		@Override
+		public void connectionOpened(final long nanos)
+		{
+		}
+		
+		@Override
+		public void connectionClosed(final long nanos)
+		{
+		}
+		
+		@Override
+		public void statementExecuted(final String sql, final long nanos, final boolean failed)
+		{
+		}
+		
+		@Override
+		public void parameterBound(final long lobLength, final long nanos)
+		{
+		}
+		
+		@Override
+		public void catalogQueryExecuted(final String sql, final long nanos)
+		{
+		}
+		
+		@Override
+		public void sqlAssembled(final boolean cached, final long nanos)
+		{
+		}
+		
+		@Override
+		public String toString()
+		{
+			return "NOOP";
+		}
+	};
+	
+	/**
+	 * @return <code>false</code> to skip all measurements
+	 */
+	default boolean isEnabled()
+	{
+		return true;
+	}
+	
+	/**
+	 * A physical connection has been opened.
+	 */
+	void connectionOpened(long nanos);
+	
+	/**
+	 * A physical connection has been closed.
+	 */
+	void connectionClosed(long nanos);
+	
+	/**
+	 * A statement has been executed by the driver, including batches.
+	 *
+	 * @param sql    the statement text, <code>null</code> for batches of a plain {@link java.sql.Statement}
+	 * @param failed <code>true</code> if the driver threw an exception
+	 */
+	void statementExecuted(String sql, long nanos, boolean failed);
+	
+	/**
+	 * A parameter has been bound to a prepared statement.
+	 *
+	 * @param lobLength bytes of a blob or characters of a clob, -1 for other parameters
+	 */
+	void parameterBound(long lobLength, long nanos);
+	
+	/**
+	 * A query on the Ingres system catalog has been run while reading metadata.
+	 */
+	void catalogQueryExecuted(String sql, long nanos);
+	
+	/**
+	 * A SELECT or INSERT has been assembled by {@link IngresDMLAssembler}.
+	 *
+	 * @param cached <code>true</code> if the text came from the {@link IngresAssembledSqlCache}
+	 */
+	void sqlAssembled(boolean cached, long nanos);
+	
+	/**
+	 * A statement has been prepared on a connection with a statement cache.
+	 *
+	 * @param cached <code>true</code> if an idle statement of the cache was reused
+	 */
+	default void statementPrepared(final boolean cached, final long nanos)
+	{
+	}
+	
+	/**
+	 * An idle prepared statement has been closed to keep the statement cache of a connection within its size.
+	 */
+	default void statementEvicted()
+	{
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.util.Arrays;
+
+
+/**
+ * Position in a result which is paged by key instead of by offset, see
+ * {@link IngresDMLAssembler#assembleKeysetPage(String, IngresPageCursor, StringBuilder)}.
+ * <p>
+ * A page starts right after the key of the last row of the previous page, so the server seeks to it through an
+ * index instead of reading and discarding all previous rows. The key columns have to identify a row uniquely, e.g.
+ * by ending with the primary key, and must not be <code>null</code>.
+ * <p>
+ * Cursors are immutable: the cursor of the first page is created with a constructor, the following ones with
+ * {@link #next(Object...)}, so a cursor can be kept between requests.
+ */
+public class IngresPageCursor
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final int pageSize;
+	private final String[] keyColumns;
+	private final boolean[] descending;
+	// null for the first page
+	private final Object[] lastKey;
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////////
+	
+	/**
+	 * Creates the cursor of the first page, ordered ascending by all key columns.
+	 */
+	public IngresPageCursor(final int pageSize, final String... keyColumns)
+	{
+		this(pageSize, keyColumns, new boolean[keyColumns.length]);
+	}
+	
+	/**
+	 * Creates the cursor of the first page.
+	 *
+	 * @param descending the sort direction of each key column
+	 */
+	public IngresPageCursor(final int pageSize, final String[] keyColumns, final boolean[] descending)
+	{
+		this(pageSize, keyColumns.clone(), descending.clone(), null);
+		
+		if(pageSize < 1)
+		{
+			throw new IllegalArgumentException("pageSize < 1");
+		}
+		if(keyColumns.length == 0 || keyColumns.length != descending.length)
+		{
+			throw new IllegalArgumentException("Invalid key: " + Arrays.toString(keyColumns));
+		}
+	}
+	
+	private IngresPageCursor(
+		final int pageSize, final String[] keyColumns,
+		final boolean[] descending, final Object[] lastKey)
+	{
+		this.pageSize = pageSize;
+		this.keyColumns = keyColumns;
+		this.descending = descending;
+		this.lastKey = lastKey;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// getters //
+	// ///////////////////
+	
+	public int getPageSize()
+	{
+		return this.pageSize;
+	}
+	
+	public String[] getKeyColumns()
+	{
+		return this.keyColumns.clone();
+	}
+	
+	public boolean isDescending(final int keyIndex)
+	{
+		return this.descending[keyIndex];
+	}
+	
+	public boolean isFirstPage()
+	{
+		return this.lastKey == null;
+	}
+	
+	/**
+	 * @return the key values of the last row of the previous page, <code>null</code> for the first page
+	 */
+	public Object[] getLastKey()
+	{
+		return this.lastKey != null ? this.lastKey.clone() : null;
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	/**
+	 * @param lastKey the key values of the last row of the current page, in the order of the key columns
+	 * @return the cursor of the page following the current one
+	 */
+	public IngresPageCursor next(final Object... lastKey)
+	{
+		if(lastKey.length != this.keyColumns.length)
+		{
+			throw new IllegalArgumentException("Expected " + this.keyColumns.length + " key values, got "
+				+ lastKey.length);
+		}
+		return new IngresPageCursor(this.pageSize, this.keyColumns, this.descending, lastKey.clone());
+	}
+	
+	/**
+	 * @return the values of the placeholders of the seek predicate, in the order assembled by
+	 *         {@link IngresDMLAssembler#assembleKeysetPage(String, IngresPageCursor, StringBuilder)}, empty for the
+	 *         first page
+	 */
+	public Object[] getSeekParameters()
+	{
+		if(this.lastKey == null)
+		{
+			return new Object[0];
+		}
+		
+		// k1 >= ? and ((k1 > ?) or (k1 = ? and k2 > ?) or ...)
+		final int keyCount = this.lastKey.length;
+		final Object[] parameters = new Object[1 + keyCount * (keyCount + 1) / 2];
+		parameters[0] = this.lastKey[0];
+		int p = 1;
+		for(int i = 0; i < keyCount; i++)
+		{
+			for(int k = 0; k <= i; k++)
+			{
+				parameters[p++] = this.lastKey[k];
+			}
+		}
+		return parameters;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "pageSize=" + this.pageSize + ", key=" + Arrays.toString(this.keyColumns) + ", lastKey="
+			+ Arrays.toString(this.lastKey);
+	}
+}
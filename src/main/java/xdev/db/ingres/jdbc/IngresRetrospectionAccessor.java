@@ -17,37 +17,190 @@
  */
 package xdev.db.ingres.jdbc;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.xdev.jadoth.sqlengine.dbms.standard.StandardRetrospectionAccessor;
 import com.xdev.jadoth.sqlengine.exceptions.SQLEngineException;
+import com.xdev.jadoth.sqlengine.internal.DatabaseGateway;
 import com.xdev.jadoth.sqlengine.internal.tables.SqlIndex;
 import com.xdev.jadoth.sqlengine.internal.tables.SqlTableIdentity;
 
 
+/**
+ * Reads columns and indices from the Ingres system catalog (<code>iicolumns</code>, <code>iiindexes</code> and
+ * <code>iiindex_columns</code>). Loaded indices are cached per table until {@link #invalidate(SqlTableIdentity)} or
+ * {@link #clearCache()} is called.
+ */
 public class IngresRetrospectionAccessor extends StandardRetrospectionAccessor<IngresDbms>
 {
+	// /////////////////////////////////////////////////////////////////////////
+	// constants //
+	// ///////////////////
 	
+	/**
+	 * @deprecated retrospection is implemented, no longer thrown
+	 */
+	@Deprecated
 	public static final String RETROSPECTION_NOT_IMPLEMENTED_YET = "Retrospection not implemented yet!";
 	
+	private static final String SELECT_INDICES = "SELECT i.index_name, i.unique_rule, c.column_name, c.key_sequence "
+		+ "FROM iiindexes i, iiindex_columns c "
+		+ "WHERE i.index_owner = c.index_owner AND i.index_name = c.index_name ";
+	
+	private static final String ORDER_INDICES = "ORDER BY i.index_name, c.key_sequence";
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final Map<String, SqlIndex[]> indexCache = new ConcurrentHashMap<>();
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////////
+	
 	public IngresRetrospectionAccessor(final IngresDbms dbmsadaptor)
 	{
 		super(dbmsadaptor);
 	}
 	
+	// /////////////////////////////////////////////////////////////////////////
+	// static methods //
+	// ///////////////////
+	
+	private static String cacheKey(final SqlTableIdentity table)
+	{
+		final SqlTableIdentity.Sql sql = table.sql();
+		return sql.schema != null ? sql.schema + '.' + sql.name : sql.name;
+	}
+	
+	private static StringBuilder appendLiteral(final StringBuilder sb, final String value)
+	{
+		return sb.append('\'').append(value.replace("'", "''")).append('\'');
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// override methods //
+	// ///////////////////
+	
 	@Override
 	public String createSelect_INFORMATION_SCHEMA_COLUMNS(final SqlTableIdentity table)
 	{
-		throw new RuntimeException(RETROSPECTION_NOT_IMPLEMENTED_YET);
+		final SqlTableIdentity.Sql sql = table.sql();
+		final StringBuilder sb = new StringBuilder(256)
+			.append("SELECT column_name, column_datatype, column_length, column_scale, column_nulls, ")
+			.append("column_defaults, column_default_val, column_sequence FROM iicolumns WHERE table_name = ");
+		appendLiteral(sb, sql.name);
+		if(sql.schema != null)
+		{
+			appendLiteral(sb.append(" AND table_owner = "), sql.schema);
+		}
+		return sb.append(" ORDER BY column_sequence").toString();
 	}
 	
 	@Override
 	public String createSelect_INFORMATION_SCHEMA_INDICES(final SqlTableIdentity table)
 	{
-		throw new RuntimeException(RETROSPECTION_NOT_IMPLEMENTED_YET);
+		final SqlTableIdentity.Sql sql = table.sql();
+		final StringBuilder sb = new StringBuilder(SELECT_INDICES).append("AND i.base_name = ");
+		appendLiteral(sb, sql.name);
+		if(sql.schema != null)
+		{
+			appendLiteral(sb.append(" AND i.base_owner = "), sql.schema);
+		}
+		return sb.append(' ').append(ORDER_INDICES).toString();
 	}
 	
+	/**
+	 * Loads the secondary indices of <code>table</code>, or returns them from the cache.
+	 *
+	 * @throws SQLEngineException if the catalog cannot be read or the DBMS has not been connected to a
+	 *                            {@link DatabaseGateway} yet
+	 */
 	@Override
 	public SqlIndex[] loadIndices(final SqlTableIdentity table) throws SQLEngineException
 	{
-		throw new RuntimeException(RETROSPECTION_NOT_IMPLEMENTED_YET);
+		final String key = cacheKey(table);
+		SqlIndex[] indices = this.indexCache.get(key);
+		if(indices == null)
+		{
+			indices = this.queryIndices(table);
+			this.indexCache.put(key, indices);
+		}
+		return indices.clone();
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	/**
+	 * Removes the cached indices of <code>table</code>, to be called after indices have been created or dropped.
+	 */
+	public void invalidate(final SqlTableIdentity table)
+	{
+		this.indexCache.remove(cacheKey(table));
+	}
+	
+	public void clearCache()
+	{
+		this.indexCache.clear();
+	}
+	
+	private SqlIndex[] queryIndices(final SqlTableIdentity table) throws SQLEngineException
+	{
+		final DatabaseGateway<IngresDbms> gateway = this.getDbmsAdaptor().getDatabaseGateway();
+		if(gateway == null)
+		{
+			throw new SQLEngineException("No database gateway to load the indices of " + cacheKey(table));
+		}
+		
+		final SqlTableIdentity.Sql sql = table.sql();
+		final String select = SELECT_INDICES + "AND i.base_name = ? "
+			+ (sql.schema != null ? "AND i.base_owner = ? " : "") + ORDER_INDICES;
+		
+		// index name -> column names in key order
+		final Map<String, List<String>> columns = new LinkedHashMap<>();
+		final Map<String, Boolean> unique = new LinkedHashMap<>();
+		try(final Connection connection = gateway.getConnectionProvider().getConnection();
+			final PreparedStatement statement = connection.prepareStatement(select))
+		{
+			statement.setString(1, sql.name);
+			if(sql.schema != null)
+			{
+				statement.setString(2, sql.schema);
+			}
+			try(final ResultSet resultSet = statement.executeQuery())
+			{
+				while(resultSet.next())
+				{
+					final String indexName = resultSet.getString(1).trim();
+					unique.put(indexName, "U".equals(resultSet.getString(2)));
+					columns.computeIfAbsent(indexName, name -> new ArrayList<>())
+						.add(resultSet.getString(3).trim());
+				}
+			}
+		}
+		catch(final SQLException e)
+		{
+			throw new SQLEngineException(e);
+		}
+		
+		final List<SqlIndex> indices = new ArrayList<>(columns.size());
+		for(final Map.Entry<String, List<String>> entry : columns.entrySet())
+		{
+			final String indexName = entry.getKey();
+			indices.add(new SqlIndex(indexName, table, unique.get(indexName),
+				entry.getValue().toArray()));
+		}
+		return indices.toArray(new SqlIndex[indices.size()]);
 	}
 }
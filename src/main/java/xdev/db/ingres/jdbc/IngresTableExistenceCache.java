@@ -0,0 +1,64 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Names of the tables known to exist, shared by all connections of an {@link IngresJDBCDataSource} so
+ * {@link IngresJDBCConnection#createTables(java.util.Collection)} does not probe <code>iitables</code> for them
+ * again.
+ * <p>
+ * Only existing tables are remembered. The adapter itself never drops or renames tables; a table dropped or renamed
+ * by a statement of the application has to be {@link #invalidate(String) invalidated}, otherwise it is not created
+ * again.
+ */
+public class IngresTableExistenceCache
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// instance fields //
+	// ///////////////////
+	
+	private final Set<String> tables = ConcurrentHashMap.newKeySet();
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// declared methods //
+	// ///////////////////
+	
+	public boolean exists(final String tableName)
+	{
+		return this.tables.contains(tableName);
+	}
+	
+	public void add(final String tableName)
+	{
+		this.tables.add(tableName);
+	}
+	
+	public void invalidate(final String tableName)
+	{
+		this.tables.remove(tableName);
+	}
+	
+	public void clear()
+	{
+		this.tables.clear();
+	}
+}
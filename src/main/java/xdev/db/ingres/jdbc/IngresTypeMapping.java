@@ -0,0 +1,185 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import xdev.db.DataType;
+
+
+/**
+ * Precomputed mapping of Ingres catalog types, used once per column while table metadata is built.
+ * <p>
+ * {@link IngresJDBCMetaData#convToJavaType(int, int)}, {@link IngresJDBCMetaData#colSize(int, int)} and
+ * {@link DataType#get(int)} are evaluated for every type code up front and stored in arrays indexed by the type
+ * code and, for the few types whose mapping depends on it, the column length. Type names are resolved once and
+ * kept in a hash map. Values outside the tables are computed as before.
+ */
+final class IngresTypeMapping
+{
+	// /////////////////////////////////////////////////////////////////////////
+	// constants //
+	// ///////////////////
+	
+	/**
+	 * Highest type code reported by <code>iicolumns</code>.
+	 */
+	static final int MAX_TYPE = 41;
+	
+	/**
+	 * Highest column length distinguished by {@link IngresJDBCMetaData#convToJavaType(int, int)}.
+	 */
+	static final int MAX_LENGTH = 8;
+	
+	// [type][length], the length index is 0 for types which do not depend on it
+	private static final int[][] SQL_TYPES = new int[MAX_TYPE + 1][];
+	private static final int[][] COLUMN_SIZES = new int[MAX_TYPE + 1][];
+	private static final DataType[][] DATA_TYPES = new DataType[MAX_TYPE + 1][];
+	
+	private static final ConcurrentMap<String, Integer> TYPE_CODES = new ConcurrentHashMap<>();
+	
+	static
+	{
+		for(int type = 0; type <= MAX_TYPE; type++)
+		{
+			final int[] sqlTypes = new int[MAX_LENGTH + 1];
+			boolean lengthDependent = false;
+			for(int length = 0; length <= MAX_LENGTH; length++)
+			{
+				sqlTypes[length] = IngresJDBCMetaData.convToJavaType(type, length);
+				lengthDependent |= sqlTypes[length] != sqlTypes[0];
+			}
+			
+			final int lengths = lengthDependent ? MAX_LENGTH + 1 : 1;
+			SQL_TYPES[type] = new int[lengths];
+			COLUMN_SIZES[type] = new int[lengths];
+			DATA_TYPES[type] = new DataType[lengths];
+			for(int length = 0; length < lengths; length++)
+			{
+				SQL_TYPES[type][length] = sqlTypes[length];
+				COLUMN_SIZES[type][length] = columnSize0(type, sqlTypes[length]);
+				DATA_TYPES[type][length] = dataType0(sqlTypes[length]);
+			}
+		}
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// constructors //
+	// ///////////////////
+	
+	private IngresTypeMapping()
+	{
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// static methods //
+	// ///////////////////
+	
+	private static int columnSize0(final int ingresType, final int sqlType)
+	{
+		try
+		{
+			return IngresJDBCMetaData.colSize(ingresType, sqlType);
+		}
+		catch(final SQLException e)
+		{
+			// not thrown by the mapping
+			return -1;
+		}
+	}
+	
+	/**
+	 * @return <code>null</code> if {@link DataType} does not know <code>sqlType</code>, so the lookup fails again at
+	 *         the column which uses it
+	 */
+	private static DataType dataType0(final int sqlType)
+	{
+		try
+		{
+			return DataType.get(sqlType);
+		}
+		catch(final RuntimeException e)
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * @return the index of <code>length</code> in the tables of <code>ingresType</code>, -1 if it is not covered
+	 */
+	private static int lengthIndex(final int ingresType, final int length)
+	{
+		if(ingresType < 0 || ingresType > MAX_TYPE)
+		{
+			return -1;
+		}
+		if(SQL_TYPES[ingresType].length == 1)
+		{
+			return 0;
+		}
+		return length >= 0 && length <= MAX_LENGTH ? length : -1;
+	}
+	
+	/**
+	 * @param typeName name of an Ingres data type as reported by the catalog, in any case
+	 * @see IngresJDBCMetaData#getIngresType(String)
+	 */
+	static int ingresType(final String typeName)
+	{
+		final Integer type = TYPE_CODES.get(typeName);
+		if(type != null)
+		{
+			return type;
+		}
+		final int resolved = IngresJDBCMetaData.getIngresType(typeName.toLowerCase());
+		TYPE_CODES.putIfAbsent(typeName, resolved);
+		return resolved;
+	}
+	
+	/**
+	 * @see IngresJDBCMetaData#convToJavaType(int, int)
+	 */
+	static int sqlType(final int ingresType, final int length)
+	{
+		final int index = lengthIndex(ingresType, length);
+		return index >= 0
+			? SQL_TYPES[ingresType][index]
+			: IngresJDBCMetaData.convToJavaType(ingresType, length);
+	}
+	
+	/**
+	 * @return the column size for the SQL type of <code>ingresType</code> and <code>length</code>
+	 * @see IngresJDBCMetaData#colSize(int, int)
+	 */
+	static int columnSize(final int ingresType, final int length)
+	{
+		final int index = lengthIndex(ingresType, length);
+		return index >= 0
+			? COLUMN_SIZES[ingresType][index]
+			: columnSize0(ingresType, IngresJDBCMetaData.convToJavaType(ingresType, length));
+	}
+	
+	static DataType dataType(final int ingresType, final int length)
+	{
+		final int index = lengthIndex(ingresType, length);
+		final DataType type = index >= 0 ? DATA_TYPES[ingresType][index] : null;
+		return type != null ? type : DataType.get(sqlType(ingresType, length));
+	}
+}
@@ -0,0 +1,290 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+
+class IngresConnectionPoolTest
+{
+	private final List<Physical> physicals = new ArrayList<>();
+	
+	private IngresConnectionPool pool(
+		final int minSize, final int maxSize,
+		final long connectionTimeout, final long idleTimeout, final long maxLifetime)
+	{
+		return new IngresConnectionPool(() -> {
+			final Physical physical = new Physical();
+			this.physicals.add(physical);
+			return physical.connection;
+		}, minSize, maxSize, connectionTimeout, idleTimeout, maxLifetime, null);
+	}
+	
+	@Test
+	void returnedConnectionIsReused() throws SQLException
+	{
+		try(final IngresConnectionPool pool = this.pool(0, 2, 0, 0, 0))
+		{
+			pool.getConnection().close();
+			final Connection connection = pool.getConnection();
+			
+			assertEquals(1, this.physicals.size());
+			assertEquals(1, pool.getStatistics().getActiveConnections());
+			connection.close();
+			assertEquals(1, pool.getStatistics().getIdleConnections());
+			assertEquals(2, pool.getStatistics().getAcquireCount());
+		}
+	}
+	
+	@Test
+	void returnedConnectionGetsItsSessionStateBack() throws SQLException
+	{
+		try(final IngresConnectionPool pool = this.pool(0, 1, 0, 0, 0))
+		{
+			final Connection connection = pool.getConnection();
+			connection.setAutoCommit(false);
+			connection.setReadOnly(true);
+			connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+			connection.setHoldability(ResultSet.CLOSE_CURSORS_AT_COMMIT);
+			connection.close();
+			
+			final Physical physical = this.physicals.get(0);
+			assertEquals(1, physical.rollbacks);
+			assertTrue(physical.autoCommit);
+			assertFalse(physical.readOnly);
+			assertEquals(Connection.TRANSACTION_READ_COMMITTED, physical.isolation);
+			assertEquals(ResultSet.HOLD_CURSORS_OVER_COMMIT, physical.holdability);
+			assertFalse(physical.closed);
+		}
+	}
+	
+	@Test
+	void connectionWithChangedCatalogIsDiscarded() throws SQLException
+	{
+		try(final IngresConnectionPool pool = this.pool(0, 1, 0, 0, 0))
+		{
+			final Connection connection = pool.getConnection();
+			connection.setCatalog("other");
+			connection.close();
+			
+			assertTrue(this.physicals.get(0).closed);
+			assertEquals(1, pool.getStatistics().getDiscardCount());
+			assertEquals(0, pool.getStatistics().getTotalConnections());
+			
+			pool.getConnection().close();
+			assertEquals(2, this.physicals.size());
+		}
+	}
+	
+	@Test
+	void exhaustedPoolTimesOut() throws SQLException
+	{
+		try(final IngresConnectionPool pool = this.pool(0, 1, 20, 0, 0))
+		{
+			final Connection connection = pool.getConnection();
+			
+			assertThrows(SQLTimeoutException.class, pool::getConnection);
+			assertEquals(1, pool.getStatistics().getTimeoutCount());
+			
+			connection.close();
+			pool.getConnection().close();
+		}
+	}
+	
+	@Test
+	void idleConnectionsAreClosedAfterTheIdleTimeout() throws Exception
+	{
+		try(final IngresConnectionPool pool = this.pool(0, 2, 0, 1, 0))
+		{
+			pool.getConnection().close();
+			Thread.sleep(10);
+			pool.houseKeeping();
+			
+			assertTrue(this.physicals.get(0).closed);
+			assertEquals(0, pool.getStatistics().getTotalConnections());
+		}
+	}
+	
+	@Test
+	void idleConnectionsAreKeptAtTheMinimumSize() throws Exception
+	{
+		try(final IngresConnectionPool pool = this.pool(1, 2, 0, 1, 0))
+		{
+			pool.getConnection().close();
+			Thread.sleep(10);
+			pool.houseKeeping();
+			
+			assertFalse(this.physicals.get(0).closed);
+			assertEquals(1, pool.getStatistics().getIdleConnections());
+		}
+	}
+	
+	@Test
+	void connectionIsRetiredAfterItsMaxLifetime() throws Exception
+	{
+		try(final IngresConnectionPool pool = this.pool(0, 1, 0, 0, 1))
+		{
+			final Connection connection = pool.getConnection();
+			Thread.sleep(10);
+			connection.close();
+			
+			assertTrue(this.physicals.get(0).closed);
+			assertEquals(0, pool.getStatistics().getTotalConnections());
+		}
+	}
+	
+	@Test
+	void physicalConnectionIsNotReachableFromStatementsResultsOrMetaData() throws SQLException
+	{
+		try(final IngresConnectionPool pool = this.pool(0, 1, 0, 0, 0))
+		{
+			final Connection connection = pool.getConnection();
+			final Statement statement = connection.createStatement();
+			final ResultSet resultSet = statement.executeQuery("SELECT 1");
+			final DatabaseMetaData metaData = connection.getMetaData();
+			
+			assertSame(connection, statement.getConnection());
+			assertSame(statement, resultSet.getStatement());
+			assertSame(connection, metaData.getConnection());
+			assertSame(connection, metaData.getTables(null, null, "%", null).getStatement().getConnection());
+			assertSame(connection, connection.unwrap(Connection.class));
+			
+			connection.close();
+			assertTrue(this.physicals.get(0).statementClosed);
+			assertFalse(this.physicals.get(0).closed);
+		}
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// physical connection //
+	// ///////////////////
+	
+	private static final class Physical
+	{
+		final Connection connection = proxy(Connection.class, (proxy, method, args) -> {
+			switch(method.getName())
+			{
+				case "getAutoCommit":
+					return this.autoCommit;
+				case "setAutoCommit":
+					this.autoCommit = (Boolean)args[0];
+					return null;
+				case "isReadOnly":
+					return this.readOnly;
+				case "setReadOnly":
+					this.readOnly = (Boolean)args[0];
+					return null;
+				case "getTransactionIsolation":
+					return this.isolation;
+				case "setTransactionIsolation":
+					this.isolation = (Integer)args[0];
+					return null;
+				case "getHoldability":
+					return this.holdability;
+				case "setHoldability":
+					this.holdability = (Integer)args[0];
+					return null;
+				case "rollback":
+					this.rollbacks++;
+					return null;
+				case "close":
+					this.closed = true;
+					return null;
+				case "isClosed":
+					return this.closed;
+				case "isValid":
+					return !this.closed;
+				case "createStatement":
+					return this.statement;
+				case "getMetaData":
+					return this.metaData;
+				case "unwrap":
+					return proxy;
+				default:
+					return null;
+			}
+		});
+		
+		final Statement statement = proxy(Statement.class, (proxy, method, args) -> {
+			switch(method.getName())
+			{
+				case "getConnection":
+					return this.connection;
+				case "executeQuery":
+					return this.resultSet();
+				case "close":
+					this.statementClosed = true;
+					return null;
+				case "isClosed":
+					return this.statementClosed;
+				default:
+					return null;
+			}
+		});
+		
+		final DatabaseMetaData metaData = proxy(DatabaseMetaData.class, (proxy, method, args) -> {
+			switch(method.getName())
+			{
+				case "getConnection":
+					return this.connection;
+				case "getTables":
+					return this.resultSet();
+				default:
+					return null;
+			}
+		});
+		
+		boolean autoCommit = true;
+		boolean readOnly;
+		int isolation = Connection.TRANSACTION_READ_COMMITTED;
+		int holdability = ResultSet.HOLD_CURSORS_OVER_COMMIT;
+		int rollbacks;
+		boolean closed;
+		boolean statementClosed;
+		
+		ResultSet resultSet()
+		{
+			return proxy(ResultSet.class, (proxy, method, args) -> "getStatement".equals(method.getName())
+				? this.statement
+				: null);
+		}
+	}
+	
+	private static <T> T proxy(final Class<T> type, final InvocationHandler handler)
+	{
+		return type.cast(Proxy.newProxyInstance(IngresConnectionPoolTest.class.getClassLoader(),
+			new Class<?>[]{type}, handler));
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import xdev.db.DBException;
+import xdev.db.ingres.jdbc.IngresJDBCConnection.TableDefinition;
+
+
+class IngresCreateTablesTest
+{
+	private final IngresTableExistenceCache cache = new IngresTableExistenceCache();
+	private final Database database = new Database();
+	
+	private final IngresJDBCConnection connection = new IngresJDBCConnection(new IngresJDBCDataSource()
+	{
+		@Override
+		public IngresTableExistenceCache getTableExistenceCache()
+		{
+			return IngresCreateTablesTest.this.cache;
+		}
+	})
+	{
+		@Override
+		public Connection getConnection()
+		{
+			return IngresCreateTablesTest.this.database.connection();
+		}
+	};
+	
+	private static TableDefinition table(final String name, final String type)
+	{
+		final Map<String, String> columns = new LinkedHashMap<>();
+		columns.put("id", "INTEGER");
+		columns.put("value", type);
+		return new TableDefinition(name, "id", columns, false);
+	}
+	
+	private static List<TableDefinition> tables(final int count)
+	{
+		final List<TableDefinition> tables = new ArrayList<>();
+		for(int i = 0; i < count; i++)
+		{
+			tables.add(table("t" + i, "VARCHAR(10)"));
+		}
+		return tables;
+	}
+	
+	@Test
+	void existenceIsProbedInBatchesOf100() throws DBException
+	{
+		this.database.existing.add("t7");
+		
+		assertEquals(249, this.connection.createTables(tables(250)));
+		
+		assertEquals(Arrays.asList(100, 100, 50), this.database.probeSizes);
+		assertEquals(249, this.database.executed.size());
+		assertFalse(this.database.executed.contains(table("t7", "VARCHAR(10)").toCreateStatement()));
+		assertEquals(1, this.database.commits);
+		assertTrue(this.database.autoCommit);
+		assertTrue(this.cache.exists("t7"));
+		assertTrue(this.cache.exists("t249"));
+	}
+	
+	@Test
+	void cachedTablesAreNotProbed() throws DBException
+	{
+		this.cache.add("t0");
+		this.cache.add("t1");
+		
+		assertEquals(1, this.connection.createTables(tables(3)));
+		
+		assertEquals(Collections.singletonList(1), this.database.probeSizes);
+		assertEquals(Collections.singletonList(table("t2", "VARCHAR(10)").toCreateStatement()),
+			this.database.executed);
+	}
+	
+	@Test
+	void nothingIsExecutedIfAllTablesAreCached() throws DBException
+	{
+		this.cache.add("t0");
+		
+		assertEquals(0, this.connection.createTables(tables(1)));
+		
+		assertTrue(this.database.probeSizes.isEmpty());
+		assertTrue(this.database.executed.isEmpty());
+	}
+	
+	@Test
+	void identicalDefinitionsAreCreatedOnce() throws DBException
+	{
+		assertEquals(1, this.connection.createTables(Arrays.asList(table("a", "INTEGER"), table("a", "INTEGER"))));
+		
+		assertEquals(Collections.singletonList(1), this.database.probeSizes);
+		assertEquals(1, this.database.executed.size());
+	}
+	
+	@Test
+	void conflictingDefinitionsAreRejected()
+	{
+		assertThrows(DBException.class, () -> this.connection.createTables(Arrays.asList(table("a", "INTEGER"),
+			table("a", "VARCHAR(10)"))));
+		
+		assertTrue(this.database.probeSizes.isEmpty());
+		assertTrue(this.database.executed.isEmpty());
+	}
+	
+	@Test
+	void failedCreateRollsBackAllTables()
+	{
+		this.database.failing = table("t1", "VARCHAR(10)").toCreateStatement();
+		
+		assertThrows(DBException.class, () -> this.connection.createTables(tables(3)));
+		
+		assertEquals(1, this.database.rollbacks);
+		assertEquals(0, this.database.commits);
+		assertTrue(this.database.autoCommit);
+		assertFalse(this.cache.exists("t0"));
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// recording connection //
+	// ///////////////////
+	
+	private static final class Database
+	{
+		final Set<String> existing = new HashSet<>();
+		final List<Integer> probeSizes = new ArrayList<>();
+		final List<String> executed = new ArrayList<>();
+		String failing;
+		boolean autoCommit = true;
+		int commits;
+		int rollbacks;
+		
+		Connection connection()
+		{
+			return proxy(Connection.class, (proxy, method, args) -> {
+				switch(method.getName())
+				{
+					case "prepareStatement":
+						return this.probe((String)args[0]);
+					case "createStatement":
+						return this.statement();
+					case "getAutoCommit":
+						return this.autoCommit;
+					case "setAutoCommit":
+						this.autoCommit = (Boolean)args[0];
+						return null;
+					case "commit":
+						this.commits++;
+						return null;
+					case "rollback":
+						this.rollbacks++;
+						return null;
+					default:
+						return method.getReturnType() == boolean.class ? false : null;
+				}
+			});
+		}
+		
+		private PreparedStatement probe(final String sql)
+		{
+			final int size = sql.length() - sql.replace("?", "").length();
+			this.probeSizes.add(size);
+			final List<String> names = new ArrayList<>();
+			return proxy(PreparedStatement.class, (proxy, method, args) -> {
+				switch(method.getName())
+				{
+					case "setString":
+						names.add((String)args[1]);
+						return null;
+					case "executeQuery":
+						final List<String> found = new ArrayList<>(names);
+						found.retainAll(this.existing);
+						return result(found);
+					default:
+						return null;
+				}
+			});
+		}
+		
+		private Statement statement()
+		{
+			return proxy(Statement.class, (proxy, method, args) -> {
+				if(method.getName().equals("execute"))
+				{
+					if(args[0].equals(this.failing))
+					{
+						throw new SQLException("create failed");
+					}
+					this.executed.add((String)args[0]);
+				}
+				return method.getReturnType() == boolean.class ? false : null;
+			});
+		}
+		
+		private static ResultSet result(final List<String> names)
+		{
+			final int[] row = {-1};
+			return proxy(ResultSet.class, (proxy, method, args) -> {
+				switch(method.getName())
+				{
+					case "next":
+						return ++row[0] < names.size();
+					case "getString":
+						// padded like Ingres char columns
+						return names.get(row[0]) + "  ";
+					default:
+						return null;
+				}
+			});
+		}
+	}
+	
+	private static <T> T proxy(final Class<T> type, final InvocationHandler handler)
+	{
+		return type.cast(Proxy.newProxyInstance(IngresCreateTablesTest.class.getClassLoader(),
+			new Class<?>[]{type}, handler));
+	}
+}
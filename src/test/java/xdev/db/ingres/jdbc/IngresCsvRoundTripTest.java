@@ -0,0 +1,240 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.xdev.jadoth.sqlengine.interfaces.ConnectionProvider;
+
+import xdev.db.DBException;
+
+
+class IngresCsvRoundTripTest
+{
+	@Test
+	void parserReadsEmptyLineAsSingleNullField() throws IOException
+	{
+		final IngresCsvFormat.Parser parser = new IngresCsvFormat(',', '"', false).parse(new StringReader(
+			"\n\"\"\r\n\na\n"));
+		
+		assertArrayEquals(new String[]{null}, parser.next());
+		assertArrayEquals(new String[]{""}, parser.next());
+		assertArrayEquals(new String[]{null}, parser.next());
+		assertArrayEquals(new String[]{"a"}, parser.next());
+		assertNull(parser.next());
+	}
+	
+	@Test
+	void singleColumnWithNullsSurvivesRoundTrip() throws DBException
+	{
+		final Table source = new Table(new String[]{"name"}, new int[]{Types.VARCHAR});
+		source.rows.add(new Object[]{"a"});
+		source.rows.add(new Object[]{null});
+		source.rows.add(new Object[]{""});
+		source.rows.add(new Object[]{null});
+		
+		assertRoundTrip(source, IngresCsvFormat.DEFAULT);
+		assertRoundTrip(source, new IngresCsvFormat(';', '\'', false));
+	}
+	
+	@Test
+	void quotedAndBinaryValuesSurviveRoundTrip() throws DBException
+	{
+		final Table source = new Table(new String[]{"text", "data"}, new int[]{Types.VARCHAR, Types.VARBINARY});
+		source.rows.add(new Object[]{"a,b", new byte[]{0, 1, (byte)0xFF}});
+		source.rows.add(new Object[]{"say \"hi\"\nbye", null});
+		source.rows.add(new Object[]{null, new byte[0]});
+		source.rows.add(new Object[]{"", null});
+		
+		assertRoundTrip(source, IngresCsvFormat.DEFAULT);
+	}
+	
+	private static void assertRoundTrip(final Table source, final IngresCsvFormat format) throws DBException
+	{
+		final StringWriter csv = new StringWriter();
+		assertEquals(source.rows.size(), new IngresExport(new DataSource(source), format).exportTable(null, "t",
+			csv));
+		
+		final Table target = new Table(source.columnNames, source.types);
+		assertEquals(source.rows.size(), new IngresImport(new DataSource(target), format).importTable(null, "t",
+			source.columnNames, new StringReader(csv.toString()), 1));
+		
+		assertArrayEquals(source.rows.toArray(), target.rows.toArray());
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// in-memory JDBC //
+	// ///////////////////
+	
+	private static final class Table
+	{
+		final String[] columnNames;
+		final int[] types;
+		final List<Object[]> rows = new ArrayList<>();
+		
+		Table(final String[] columnNames, final int[] types)
+		{
+			this.columnNames = columnNames;
+			this.types = types;
+		}
+	}
+	
+	private static final class DataSource extends IngresJDBCDataSource
+	{
+		private final Table table;
+		
+		DataSource(final Table table)
+		{
+			this.table = table;
+		}
+		
+		@Override
+		public ConnectionProvider<IngresDbms> getConnectionProvider()
+		{
+			return new ConnectionProvider<IngresDbms>()
+			{
+				@Override
+				public Connection getConnection()
+				{
+					return connection(DataSource.this.table);
+				}
+				
+				@Override
+				public IngresDbms getDbmsAdaptor()
+				{
+					return DataSource.this.getDbmsAdaptor();
+				}
+			};
+		}
+	}
+	
+	private static Connection connection(final Table table)
+	{
+		return proxy(Connection.class, (proxy, method, args) -> {
+			switch(method.getName())
+			{
+				case "createStatement":
+					return statement(table);
+				case "prepareStatement":
+					return insert(table);
+				case "getAutoCommit":
+					return true;
+				default:
+					return null;
+			}
+		});
+	}
+	
+	private static Statement statement(final Table table)
+	{
+		return proxy(Statement.class, (proxy, method, args) -> {
+			if(method.getName().equals("executeQuery"))
+			{
+				final boolean empty = ((String)args[0]).endsWith("WHERE 1=0");
+				return resultSet(table, empty ? new ArrayList<>() : table.rows);
+			}
+			return null;
+		});
+	}
+	
+	private static ResultSet resultSet(final Table table, final List<Object[]> rows)
+	{
+		final ResultSetMetaData metaData = proxy(ResultSetMetaData.class, (proxy, method, args) -> {
+			switch(method.getName())
+			{
+				case "getColumnCount":
+					return table.types.length;
+				case "getColumnName":
+					return table.columnNames[(Integer)args[0] - 1];
+				case "getColumnType":
+					return table.types[(Integer)args[0] - 1];
+				default:
+					return null;
+			}
+		});
+		final int[] row = {-1};
+		return proxy(ResultSet.class, (proxy, method, args) -> {
+			switch(method.getName())
+			{
+				case "getMetaData":
+					return metaData;
+				case "next":
+					return ++row[0] < rows.size();
+				case "getString":
+				case "getBytes":
+					return rows.get(row[0])[(Integer)args[0] - 1];
+				default:
+					return null;
+			}
+		});
+	}
+	
+	private static PreparedStatement insert(final Table table)
+	{
+		final List<Object[]> batch = new ArrayList<>();
+		final Object[] values = new Object[table.types.length];
+		return proxy(PreparedStatement.class, (proxy, method, args) -> {
+			switch(method.getName())
+			{
+				case "setNull":
+					values[(Integer)args[0] - 1] = null;
+					return null;
+				case "setObject":
+				case "setBytes":
+					values[(Integer)args[0] - 1] = args[1];
+					return null;
+				case "addBatch":
+					batch.add(values.clone());
+					return null;
+				case "executeBatch":
+					table.rows.addAll(batch);
+					final int[] counts = new int[batch.size()];
+					Arrays.fill(counts, 1);
+					batch.clear();
+					return counts;
+				default:
+					return null;
+			}
+		});
+	}
+	
+	private static <T> T proxy(final Class<T> type, final InvocationHandler handler)
+	{
+		return type.cast(Proxy.newProxyInstance(IngresCsvRoundTripTest.class.getClassLoader(), new Class<?>[]{type},
+			handler));
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.xdev.jadoth.sqlengine.exceptions.SQLEngineException;
+
+
+class IngresDbmsTest
+{
+	@Test
+	void appendHexOfEmptyArrayAppendsNothing()
+	{
+		assertEquals("x", IngresDbms.appendHex(new byte[0], new StringBuilder("x")).toString());
+	}
+	
+	@Test
+	void appendHexWritesTwoUpperCaseDigitsPerByte()
+	{
+		final byte[] bytes = {0x00, 0x0A, 0x7F, (byte)0x80, (byte)0xAB, (byte)0xFF};
+		assertEquals("000A7F80ABFF", IngresDbms.appendHex(bytes, new StringBuilder()).toString());
+	}
+	
+	@Test
+	void assembleTransformBytesWritesHexLiteral()
+	{
+		final IngresDbms dbms = new IngresDbms();
+		
+		assertEquals("v=X''", dbms.assembleTransformBytes(new byte[0], new StringBuilder("v=")).toString());
+		assertEquals("X'01FE'", dbms.assembleTransformBytes(new byte[]{1, (byte)0xFE}, new StringBuilder())
+			.toString());
+	}
+	
+	@Test
+	void assembleTransformBytesInlinesLargeValuesByDefault()
+	{
+		final byte[] bytes = new byte[IngresDbms.MAX_INLINE_BINARY_LENGTH + 1];
+		Arrays.fill(bytes, (byte)0x5A);
+		
+		final String literal = new IngresDbms().assembleTransformBytes(bytes, new StringBuilder()).toString();
+		
+		assertEquals(3 + 2 * bytes.length, literal.length());
+		assertEquals("X'5A5A", literal.substring(0, 6));
+		assertEquals('\'', literal.charAt(literal.length() - 1));
+	}
+	
+	@Test
+	void assembleTransformBytesRejectsValuesAboveConfiguredLimit()
+	{
+		final IngresDbms dbms = new IngresDbms();
+		dbms.setMaxInlineBinaryLength(2);
+		
+		assertEquals("X'0102'", dbms.assembleTransformBytes(new byte[]{1, 2}, new StringBuilder()).toString());
+		assertThrows(SQLEngineException.class,
+			() -> dbms.assembleTransformBytes(new byte[]{1, 2, 3}, new StringBuilder()));
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.xdev.jadoth.sqlengine.exceptions.SQLEngineException;
+import com.xdev.jadoth.sqlengine.interfaces.ConnectionProvider;
+import com.xdev.jadoth.sqlengine.internal.tables.SqlTableIdentity;
+
+
+class IngresMaintenanceTest
+{
+	private final List<String> executed = new ArrayList<>();
+	
+	private final IngresMaintenance maintenance = new IngresMaintenance(null)
+	{
+		@Override
+		protected char getIdentifierDelimiter()
+		{
+			return '"';
+		}
+		
+		@Override
+		protected void execute(final String... statements)
+		{
+			IngresMaintenanceTest.this.executed.addAll(Arrays.asList(statements));
+		}
+	};
+	
+	private static List<SqlTableIdentity> tables(final int count)
+	{
+		final List<SqlTableIdentity> tables = new ArrayList<>();
+		for(int i = 0; i < count; i++)
+		{
+			tables.add(new SqlTableIdentity(null, "t" + i, null));
+		}
+		return tables;
+	}
+	
+	@Test
+	void statisticsOfColumnsWithSample()
+	{
+		final String sql = this.maintenance.updateStatistics(new SqlTableIdentity("sales", "orders", null), 10,
+			"id", "Customer");
+		
+		assertEquals("CREATE STATISTICS FOR \"sales\".\"orders\" (\"id\", \"Customer\") WITH SAMPLE = 10", sql);
+		assertEquals(Collections.singletonList(sql), this.executed);
+	}
+	
+	@Test
+	void fullSampleReadsAllRows()
+	{
+		assertEquals("CREATE STATISTICS FOR \"orders\"",
+			this.maintenance.updateStatistics(new SqlTableIdentity(null, "orders", null), 100));
+		assertEquals("CREATE STATISTICS FOR \"orders\"",
+			this.maintenance.updateStatistics(new SqlTableIdentity(null, "orders", null), 0));
+	}
+	
+	@Test
+	void statisticsAreBatchedPer50Tables()
+	{
+		assertEquals(1, this.maintenance.updateStatistics(tables(50), 0).size());
+		assertEquals(2, this.maintenance.updateStatistics(tables(51), 0).size());
+		assertEquals(2, this.maintenance.updateStatistics(tables(100), 0).size());
+		assertEquals(5, this.executed.size());
+	}
+	
+	@Test
+	void lastBatchHoldsTheRemainingTables()
+	{
+		final List<String> statements = this.maintenance.updateStatistics(tables(52), 25);
+		
+		assertTrue(statements.get(0).startsWith("CREATE STATISTICS FOR \"t0\", \"t1\", "));
+		assertTrue(statements.get(0).endsWith(", \"t49\" WITH SAMPLE = 25"));
+		assertEquals("CREATE STATISTICS FOR \"t50\", \"t51\" WITH SAMPLE = 25", statements.get(1));
+		assertEquals(statements, this.executed);
+	}
+	
+	@Test
+	void noTablesNoStatement()
+	{
+		assertTrue(this.maintenance.updateStatistics(tables(0), 0).isEmpty());
+	}
+	
+	@Test
+	void undelimitedNamesAreFoldedToLowerCase()
+	{
+		assertArrayEquals(new Object[]{null, "orders"}, IngresMaintenance.parseQualifiedName(" Orders ", '"'));
+		assertArrayEquals(new Object[]{"sales", "orders"}, IngresMaintenance.parseQualifiedName("Sales.ORDERS", '"'));
+		assertArrayEquals(new Object[]{"Sales", "Order.Items"},
+			IngresMaintenance.parseQualifiedName("\"Sales\".\"Order.Items\"", '"'));
+	}
+	
+	@Test
+	void uninitializedDbmsHasNoMaintenance()
+	{
+		final IngresDbms dbms = new IngresDbms();
+		
+		assertThrows(SQLEngineException.class, () -> dbms.updateSelectivity(new SqlTableIdentity(null, "t", null)));
+		assertThrows(SQLEngineException.class, () -> dbms.rebuildAllIndices("t"));
+	}
+	
+	@Test
+	void tablesAreRebuiltBeforeTheirIndices()
+	{
+		final Catalog catalog = new Catalog();
+		catalog.indices.put("orders@sales", new String[][]{{"sales  ", "orders_ix1  "}, {"sales", "Orders_IX2"}});
+		
+		assertEquals(4, catalog.maintenance().rebuildIndices(null, 2, "Sales.Orders", "\"Items\""));
+		
+		assertEquals(2, catalog.executed.size());
+		assertTrue(catalog.executed.contains(Arrays.asList("MODIFY \"sales\".\"orders\" TO RECONSTRUCT",
+			"MODIFY \"sales\".\"orders_ix1\" TO RECONSTRUCT", "MODIFY \"sales\".\"Orders_IX2\" TO RECONSTRUCT")));
+		assertTrue(catalog.executed.contains(Collections.singletonList("MODIFY \"Items\" TO RECONSTRUCT")));
+	}
+	
+	@Test
+	void unqualifiedTablesAreLookedUpForTheCurrentUser()
+	{
+		final Catalog catalog = new Catalog();
+		
+		catalog.maintenance().rebuildIndices(null, 1, "orders", "sales.orders");
+		
+		assertEquals(Arrays.asList("SELECT index_owner, index_name FROM iiindexes WHERE base_name = ? "
+			+ "AND base_owner = dbmsinfo('username') ORDER BY index_name [orders]",
+			"SELECT index_owner, index_name FROM iiindexes WHERE base_name = ? AND base_owner = ? "
+				+ "ORDER BY index_name [orders, sales]"), catalog.lookups);
+	}
+	
+	@Test
+	void failedRebuildIsReported()
+	{
+		final Catalog catalog = new Catalog();
+		catalog.failing = "MODIFY \"orders\" TO RECONSTRUCT";
+		
+		assertThrows(SQLEngineException.class, () -> catalog.maintenance().rebuildIndices(null, 1, "orders"));
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// fake catalog //
+	// ///////////////////
+	
+	/**
+	 * Connections which answer index lookups from {@link #indices} and record the executed statements.
+	 */
+	private static final class Catalog
+	{
+		// "name@owner" -> rows of index owner and name
+		final Map<String, String[][]> indices = new HashMap<>();
+		final List<String> lookups = Collections.synchronizedList(new ArrayList<>());
+		// statements per connection, in the order the connections were used
+		final List<List<String>> executed = Collections.synchronizedList(new ArrayList<>());
+		String failing;
+		
+		IngresMaintenance maintenance()
+		{
+			final IngresDbms dbms = new IngresDbms();
+			return new IngresMaintenance(proxy(ConnectionProvider.class, (proxy, method, args) -> {
+				switch(method.getName())
+				{
+					case "getConnection":
+						return this.connection();
+					case "getDbmsAdaptor":
+						return dbms;
+					default:
+						return null;
+				}
+			}));
+		}
+		
+		private Connection connection()
+		{
+			final List<String> statements = new ArrayList<>();
+			return proxy(Connection.class, (proxy, method, args) -> {
+				switch(method.getName())
+				{
+					case "prepareStatement":
+						return this.lookup((String)args[0]);
+					case "createStatement":
+						return proxy(Statement.class, (statement, executeMethod, sql) -> {
+							if("execute".equals(executeMethod.getName()))
+							{
+								if(sql[0].equals(this.failing))
+								{
+									throw new SQLException("lock timeout");
+								}
+								if(statements.isEmpty())
+								{
+									this.executed.add(statements);
+								}
+								statements.add((String)sql[0]);
+							}
+							return executeMethod.getReturnType() == boolean.class ? false : null;
+						});
+					case "getAutoCommit":
+						return true;
+					default:
+						return method.getReturnType() == boolean.class ? false : null;
+				}
+			});
+		}
+		
+		private PreparedStatement lookup(final String sql)
+		{
+			final List<String> parameters = new ArrayList<>();
+			return proxy(PreparedStatement.class, (proxy, method, args) -> {
+				switch(method.getName())
+				{
+					case "setString":
+						parameters.add((String)args[1]);
+						return null;
+					case "executeQuery":
+						this.lookups.add(sql + " " + parameters);
+						final String owner = parameters.size() > 1 ? parameters.get(1) : "sales";
+						final String[][] rows = this.indices.getOrDefault(parameters.get(0) + "@" + owner,
+							new String[0][]);
+						parameters.clear();
+						return result(rows);
+					default:
+						return null;
+				}
+			});
+		}
+		
+		private static ResultSet result(final String[][] rows)
+		{
+			final int[] row = {-1};
+			return proxy(ResultSet.class, (proxy, method, args) -> {
+				switch(method.getName())
+				{
+					case "next":
+						return ++row[0] < rows.length;
+					case "getString":
+						return rows[row[0]][(Integer)args[0] - 1];
+					default:
+						return null;
+				}
+			});
+		}
+	}
+	
+	private static <T> T proxy(final Class<T> type, final InvocationHandler handler)
+	{
+		return type.cast(Proxy.newProxyInstance(IngresMaintenanceTest.class.getClassLoader(),
+			new Class<?>[]{type}, handler));
+	}
+}
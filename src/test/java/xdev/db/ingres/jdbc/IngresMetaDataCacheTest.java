@@ -0,0 +1,100 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Collections;
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import xdev.db.ColumnMetaData;
+import xdev.db.DBMetaData.TableInfo;
+import xdev.db.DBMetaData.TableMetaData;
+import xdev.db.DBMetaData.TableType;
+import xdev.db.Index;
+import xdev.db.ingres.jdbc.IngresMetaDataCache.ForeignKey;
+
+
+class IngresMetaDataCacheTest
+{
+	private static TableMetaData metaData(final String tableName)
+	{
+		return new TableMetaData(new TableInfo(TableType.TABLE, "admin", tableName), new ColumnMetaData[0],
+			new Index[0], 0);
+	}
+	
+	@Test
+	void tableMetaDataIsServedWhileTheStampIsUnchanged()
+	{
+		final IngresMetaDataCache cache = new IngresMetaDataCache();
+		final TableMetaData metaData = metaData("orders");
+		cache.putTableMetaData("orders", 0, "sig1", "stamp1", metaData);
+		
+		assertSame(metaData, cache.getTableMetaData("orders", 0, "stamp1"));
+		assertSame(metaData, cache.getTableMetaData("orders", 0, "stamp1"));
+		assertNull(cache.getTableMetaData("orders", 1, "stamp1"));
+		assertEquals(2, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+	}
+	
+	@Test
+	void changedStampRevalidatesAgainstTheTableSignature()
+	{
+		final IngresMetaDataCache cache = new IngresMetaDataCache();
+		final TableMetaData metaData = metaData("orders");
+		cache.putTableMetaData("orders", 0, "sig1", "stamp1", metaData);
+		
+		assertNull(cache.getTableMetaData("orders", 0, "stamp2"));
+		assertSame(metaData, cache.revalidateTableMetaData("orders", 0, "sig1", "stamp2"));
+		// valid for the new stamp from now on
+		assertSame(metaData, cache.getTableMetaData("orders", 0, "stamp2"));
+		
+		assertNull(cache.getTableMetaData("orders", 0, "stamp3"));
+		assertNull(cache.revalidateTableMetaData("orders", 0, "sig2", "stamp3"));
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+	
+	@Test
+	void invalidateDropsTheTableTheTableListsAndReferencingForeignKeys()
+	{
+		final IngresMetaDataCache cache = new IngresMetaDataCache();
+		final EnumSet<TableType> types = EnumSet.of(TableType.TABLE);
+		cache.putTableInfos(types, "stamp1", new TableInfo[]{new TableInfo(TableType.TABLE, "admin", "orders")});
+		cache.putTableMetaData("orders", 0, "sig1", "stamp1", metaData("orders"));
+		cache.putTableMetaData("orders", 1, "sig1", "stamp1", metaData("orders"));
+		cache.putTableMetaData("items", 0, "sig1", "stamp1", metaData("items"));
+		cache.putForeignKeys("items", "fk1", Collections.singletonList(new ForeignKey("orders", "items",
+			new String[]{"id"}, new String[]{"order_id"})));
+		cache.putForeignKeys("customers", "fk1", Collections.emptyList());
+		
+		cache.invalidate("orders");
+		
+		assertNull(cache.getTableInfos(types, "stamp1"));
+		assertNull(cache.getTableMetaData("orders", 0, "stamp1"));
+		assertNull(cache.revalidateTableMetaData("orders", 1, "sig1", "stamp1"));
+		assertNull(cache.getForeignKeys("items", "fk1"));
+		assertNotNull(cache.getTableMetaData("items", 0, "stamp1"));
+		assertNotNull(cache.getForeignKeys("customers", "fk1"));
+	}
+}
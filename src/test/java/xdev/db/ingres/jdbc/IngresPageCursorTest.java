@@ -0,0 +1,68 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+
+class IngresPageCursorTest
+{
+	private static String assemble(final IngresPageCursor cursor)
+	{
+		return new IngresDbms().getDMLAssembler().assembleKeysetPage("SELECT * FROM t", cursor, new StringBuilder())
+			.toString();
+	}
+	
+	@Test
+	void firstPageHasNoSeekPredicate()
+	{
+		final IngresPageCursor cursor = new IngresPageCursor(10, "id");
+		
+		assertEquals("SELECT * FROM (SELECT * FROM t) \"page\" ORDER BY \"id\" FETCH FIRST 10 ROWS ONLY",
+			assemble(cursor));
+		assertArrayEquals(new Object[0], cursor.getSeekParameters());
+	}
+	
+	@Test
+	void seekPredicateLeadsWithRangeOnFirstAscendingKey()
+	{
+		final IngresPageCursor cursor = new IngresPageCursor(50, new String[]{"name", "created", "id"},
+			new boolean[]{false, true, false}).next("b", 20, 7);
+		
+		assertEquals("SELECT * FROM (SELECT * FROM t) \"page\" WHERE \"name\" >= ? AND ((\"name\" > ?)"
+			+ " OR (\"name\" = ? AND \"created\" < ?)"
+			+ " OR (\"name\" = ? AND \"created\" = ? AND \"id\" > ?))"
+			+ " ORDER BY \"name\", \"created\" DESC, \"id\" FETCH FIRST 50 ROWS ONLY", assemble(cursor));
+		assertArrayEquals(new Object[]{"b", "b", "b", 20, "b", 20, 7}, cursor.getSeekParameters());
+	}
+	
+	@Test
+	void seekPredicateLeadsWithRangeOnFirstDescendingKey()
+	{
+		final IngresPageCursor cursor = new IngresPageCursor(5, new String[]{"created", "id"},
+			new boolean[]{true, false}).next(20, 7);
+		
+		assertEquals("SELECT * FROM (SELECT * FROM t) \"page\" WHERE \"created\" <= ? AND ((\"created\" < ?)"
+			+ " OR (\"created\" = ? AND \"id\" > ?))"
+			+ " ORDER BY \"created\" DESC, \"id\" FETCH FIRST 5 ROWS ONLY", assemble(cursor));
+		assertArrayEquals(new Object[]{20, 20, 20, 7}, cursor.getSeekParameters());
+	}
+}
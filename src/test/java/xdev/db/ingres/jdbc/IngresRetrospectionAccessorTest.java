@@ -0,0 +1,83 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.xdev.jadoth.sqlengine.exceptions.SQLEngineException;
+import com.xdev.jadoth.sqlengine.internal.tables.SqlTableIdentity;
+
+
+class IngresRetrospectionAccessorTest
+{
+	private final IngresRetrospectionAccessor accessor = new IngresRetrospectionAccessor(new IngresDbms());
+	
+	@Test
+	void columnsOfUnqualifiedTable()
+	{
+		assertEquals("SELECT column_name, column_datatype, column_length, column_scale, column_nulls, "
+			+ "column_defaults, column_default_val, column_sequence FROM iicolumns WHERE table_name = 'orders' "
+			+ "ORDER BY column_sequence",
+			this.accessor.createSelect_INFORMATION_SCHEMA_COLUMNS(new SqlTableIdentity(null, "orders", null)));
+	}
+	
+	@Test
+	void columnsOfQualifiedTableAreRestrictedToOwner()
+	{
+		assertEquals("SELECT column_name, column_datatype, column_length, column_scale, column_nulls, "
+			+ "column_defaults, column_default_val, column_sequence FROM iicolumns WHERE table_name = 'orders' "
+			+ "AND table_owner = 'sales' ORDER BY column_sequence",
+			this.accessor.createSelect_INFORMATION_SCHEMA_COLUMNS(new SqlTableIdentity("sales", "orders", null)));
+	}
+	
+	@Test
+	void indicesOfQualifiedTable()
+	{
+		assertEquals("SELECT i.index_name, i.unique_rule, c.column_name, c.key_sequence "
+			+ "FROM iiindexes i, iiindex_columns c "
+			+ "WHERE i.index_owner = c.index_owner AND i.index_name = c.index_name "
+			+ "AND i.base_name = 'orders' AND i.base_owner = 'sales' ORDER BY i.index_name, c.key_sequence",
+			this.accessor.createSelect_INFORMATION_SCHEMA_INDICES(new SqlTableIdentity("sales", "orders", null)));
+	}
+	
+	@Test
+	void quotesInNamesAreDoubled()
+	{
+		final SqlTableIdentity table = new SqlTableIdentity("o'brien", "it's", null);
+		
+		assertEquals("SELECT column_name, column_datatype, column_length, column_scale, column_nulls, "
+			+ "column_defaults, column_default_val, column_sequence FROM iicolumns WHERE table_name = 'it''s' "
+			+ "AND table_owner = 'o''brien' ORDER BY column_sequence",
+			this.accessor.createSelect_INFORMATION_SCHEMA_COLUMNS(table));
+		assertEquals("SELECT i.index_name, i.unique_rule, c.column_name, c.key_sequence "
+			+ "FROM iiindexes i, iiindex_columns c "
+			+ "WHERE i.index_owner = c.index_owner AND i.index_name = c.index_name "
+			+ "AND i.base_name = 'it''s' AND i.base_owner = 'o''brien' ORDER BY i.index_name, c.key_sequence",
+			this.accessor.createSelect_INFORMATION_SCHEMA_INDICES(table));
+	}
+	
+	@Test
+	void indicesCannotBeLoadedWithoutGateway()
+	{
+		assertThrows(SQLEngineException.class,
+			() -> this.accessor.loadIndices(new SqlTableIdentity(null, "orders", null)));
+	}
+}
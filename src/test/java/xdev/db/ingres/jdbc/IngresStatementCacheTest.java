@@ -0,0 +1,307 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+
+class IngresStatementCacheTest
+{
+	private final List<Physical> prepared = new ArrayList<>();
+	private int prepareHits;
+	private int prepareMisses;
+	private int evictions;
+	
+	private final IngresDbms dbms = new IngresDbms();
+	
+	{
+		this.dbms.setMetricsListener(new IngresMetricsListener()
+		{
+			@Override
+			public boolean isEnabled()
+			{
+				return true;
+			}
+			
+			@Override
+			public void connectionOpened(final long nanos)
+			{
+			}
+			
+			@Override
+			public void connectionClosed(final long nanos)
+			{
+			}
+			
+			@Override
+			public void statementExecuted(final String sql, final long nanos, final boolean failed)
+			{
+			}
+			
+			@Override
+			public void parameterBound(final long lobLength, final long nanos)
+			{
+			}
+			
+			@Override
+			public void catalogQueryExecuted(final String sql, final long nanos)
+			{
+			}
+			
+			@Override
+			public void sqlAssembled(final boolean cached, final long nanos)
+			{
+			}
+			
+			@Override
+			public void statementPrepared(final boolean cached, final long nanos)
+			{
+				if(cached)
+				{
+					IngresStatementCacheTest.this.prepareHits++;
+				}
+				else
+				{
+					IngresStatementCacheTest.this.prepareMisses++;
+				}
+			}
+			
+			@Override
+			public void statementEvicted()
+			{
+				IngresStatementCacheTest.this.evictions++;
+			}
+		});
+	}
+	
+	private Connection connection(final int statementCacheSize)
+	{
+		return this.connection(IngresFetchSize.DRIVER_DEFAULT, statementCacheSize);
+	}
+	
+	private Connection connection(final IngresFetchSize fetchSize, final int statementCacheSize)
+	{
+		final Connection physical = (Connection)Proxy.newProxyInstance(getClass().getClassLoader(),
+			new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+				if("prepareStatement".equals(method.getName()))
+				{
+					final Physical statement = new Physical((String)args[0]);
+					this.prepared.add(statement);
+					return statement.statement;
+				}
+				return method.getReturnType() == boolean.class ? false : null;
+			});
+		return IngresInstrumentedConnection.wrap(physical, this.dbms, fetchSize, statementCacheSize);
+	}
+	
+	@Test
+	void closedStatementIsReused() throws SQLException
+	{
+		final Connection connection = this.connection(2);
+		
+		connection.prepareStatement("select 1").close();
+		connection.prepareStatement("select 1").close();
+		connection.prepareStatement("select 2").close();
+		
+		assertEquals(2, this.prepared.size());
+		assertEquals(1, this.prepareHits);
+		assertEquals(2, this.prepareMisses);
+		assertFalse(this.prepared.get(0).closed);
+	}
+	
+	@Test
+	void openStatementIsNotShared() throws SQLException
+	{
+		final Connection connection = this.connection(2);
+		
+		final PreparedStatement first = connection.prepareStatement("select 1");
+		final PreparedStatement second = connection.prepareStatement("select 1");
+		
+		assertNotSame(first, second);
+		assertEquals(2, this.prepared.size());
+		
+		first.close();
+		second.close();
+		// only one idle statement is kept per text
+		assertEquals(1, this.evictions);
+	}
+	
+	@Test
+	void leastRecentlyClosedStatementIsEvicted() throws SQLException
+	{
+		final Connection connection = this.connection(2);
+		
+		connection.prepareStatement("select 1").close();
+		connection.prepareStatement("select 2").close();
+		// makes "select 2" the eldest idle statement
+		connection.prepareStatement("select 1").close();
+		connection.prepareStatement("select 3").close();
+		
+		assertEquals(1, this.evictions);
+		assertTrue(this.prepared.get(1).closed);
+		assertFalse(this.prepared.get(0).closed);
+		assertFalse(this.prepared.get(2).closed);
+		
+		connection.prepareStatement("select 2").close();
+		assertEquals(4, this.prepared.size());
+	}
+	
+	@Test
+	void releasedStatementIsReset() throws SQLException
+	{
+		final Connection connection = this.connection(1);
+		
+		final PreparedStatement statement = connection.prepareStatement("update t set a = ?");
+		statement.setInt(1, 42);
+		statement.addBatch();
+		statement.setFetchSize(100);
+		statement.setMaxRows(10);
+		statement.setQueryTimeout(5);
+		statement.close();
+		
+		final Physical physical = this.prepared.get(0);
+		assertTrue(physical.parameters.isEmpty());
+		assertEquals(0, physical.batches);
+		assertEquals(0, physical.fetchSize);
+		assertEquals(0, physical.maxRows);
+		assertEquals(0, physical.queryTimeout);
+		assertFalse(physical.closed);
+	}
+	
+	@Test
+	void closedHandleCannotBeUsed() throws SQLException
+	{
+		final Connection connection = this.connection(1);
+		
+		final PreparedStatement statement = connection.prepareStatement("select 1");
+		statement.close();
+		
+		assertTrue(statement.isClosed());
+		assertThrows(SQLException.class, () -> statement.setInt(1, 1));
+		assertFalse(this.prepared.get(0).closed);
+	}
+	
+	@Test
+	void idleStatementsAreClosedWithTheConnection() throws SQLException
+	{
+		final Connection connection = this.connection(2);
+		
+		connection.prepareStatement("select 1").close();
+		connection.prepareStatement("select 2").close();
+		connection.close();
+		
+		assertTrue(this.prepared.get(0).closed);
+		assertTrue(this.prepared.get(1).closed);
+		assertEquals(0, this.evictions);
+	}
+	
+	@Test
+	void onlyQueriesAreDescribed() throws SQLException
+	{
+		final Connection connection = this.connection(new IngresFetchSize(0, 65536), 1);
+		
+		final PreparedStatement statement = connection.prepareStatement("update t set a = 1");
+		statement.execute();
+		statement.executeUpdate();
+		assertEquals(0, this.prepared.get(0).describes);
+		
+		statement.executeQuery();
+		assertEquals(1, this.prepared.get(0).describes);
+	}
+	
+	// /////////////////////////////////////////////////////////////////////////
+	// fake statement //
+	// ///////////////////
+	
+	private static final class Physical
+	{
+		final Map<Integer, Object> parameters = new LinkedHashMap<>();
+		int batches;
+		int fetchSize;
+		int maxRows;
+		int queryTimeout;
+		int describes;
+		boolean closed;
+		
+		final PreparedStatement statement;
+		
+		Physical(final String sql)
+		{
+			this.statement = (PreparedStatement)Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+					switch(method.getName())
+					{
+						case "setInt":
+							this.parameters.put((Integer)args[0], args[1]);
+							return null;
+						case "clearParameters":
+							this.parameters.clear();
+							return null;
+						case "addBatch":
+							this.batches++;
+							return null;
+						case "clearBatch":
+							this.batches = 0;
+							return null;
+						case "setFetchSize":
+							this.fetchSize = (Integer)args[0];
+							return null;
+						case "getFetchSize":
+							return this.fetchSize;
+						case "setMaxRows":
+							this.maxRows = (Integer)args[0];
+							return null;
+						case "setQueryTimeout":
+							this.queryTimeout = (Integer)args[0];
+							return null;
+						case "close":
+							this.closed = true;
+							return null;
+						case "isClosed":
+							return this.closed;
+						case "getMetaData":
+							this.describes++;
+							return null;
+						case "execute":
+							return false;
+						case "executeUpdate":
+							return 0;
+						case "toString":
+							return sql;
+						default:
+							return null;
+					}
+				});
+		}
+	}
+}
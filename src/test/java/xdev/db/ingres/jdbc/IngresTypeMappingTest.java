@@ -0,0 +1,106 @@
+/*
+ * SqlEngine Database Adapter Ingres - XAPI SqlEngine Database Adapter for Ingres
+ * Copyright © 2003 XDEV Software (https://xdev.software)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package xdev.db.ingres.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.Test;
+
+import xdev.db.DataType;
+
+
+class IngresTypeMappingTest
+{
+	private static final int[] LENGTHS = {-1, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 16, 255, 32000, Integer.MAX_VALUE};
+	
+	private static final String[] TYPE_NAMES = {"tinyint", "smallint", "integer", "int", "bigint", "real", "float",
+		"double precision", "double p", "decimal", "numeric", "char", "character", "varchar", "long varchar",
+		"nchar", "nvarchar", "long nvarchar", "byte", "varbyte", "byte varying", "long byte", "c", "text", "money",
+		"boolean", "date", "ingresdate", "ansidate", "time with local time zone", "time without time zone",
+		"time with time zone", "timestamp with local time zone", "timestamp without time zone",
+		"timestamp with time zone", "interval year to month", "interval day to second", "unknown type"};
+	
+	private static int colSize(final int ingresType, final int sqlType)
+	{
+		try
+		{
+			return IngresJDBCMetaData.colSize(ingresType, sqlType);
+		}
+		catch(final SQLException e)
+		{
+			return -1;
+		}
+	}
+	
+	@Test
+	void sqlTypeAndColumnSizeMatchTheMetaDataForEveryTypeAndLength()
+	{
+		for(int type = -1; type <= IngresTypeMapping.MAX_TYPE + 1; type++)
+		{
+			for(final int length : LENGTHS)
+			{
+				final String at = "type " + type + ", length " + length;
+				final int sqlType = IngresJDBCMetaData.convToJavaType(type, length);
+				assertEquals(sqlType, IngresTypeMapping.sqlType(type, length), at);
+				assertEquals(colSize(type, sqlType), IngresTypeMapping.columnSize(type, length), at);
+			}
+		}
+	}
+	
+	@Test
+	void dataTypeMatchesTheMetaDataForEveryTypeAndLength()
+	{
+		for(int type = -1; type <= IngresTypeMapping.MAX_TYPE + 1; type++)
+		{
+			for(final int length : LENGTHS)
+			{
+				final int ingresType = type;
+				final int columnLength = length;
+				final int sqlType = IngresJDBCMetaData.convToJavaType(type, length);
+				DataType expected;
+				try
+				{
+					expected = DataType.get(sqlType);
+				}
+				catch(final RuntimeException e)
+				{
+					assertThrows(e.getClass(), () -> IngresTypeMapping.dataType(ingresType, columnLength));
+					continue;
+				}
+				assertEquals(expected, IngresTypeMapping.dataType(type, length), "type " + type + ", length "
+					+ length);
+			}
+		}
+	}
+	
+	@Test
+	void ingresTypeMatchesTheMetaDataInAnyCase()
+	{
+		for(final String name : TYPE_NAMES)
+		{
+			final int expected = IngresJDBCMetaData.getIngresType(name);
+			assertEquals(expected, IngresTypeMapping.ingresType(name), name);
+			assertEquals(expected, IngresTypeMapping.ingresType(name.toUpperCase()), name);
+			// served from the map
+			assertEquals(expected, IngresTypeMapping.ingresType(name), name);
+		}
+	}
+}